@@ -0,0 +1,181 @@
+package client;
+
+import communication.QueryMessage;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import utility.Encryption;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The IntegrityVerifier class.
+ * Integrity checks of a join result, performed fragment by fragment while the result is received.
+ * Every decrypted fragment is observed as soon as it is available, so that the verdict is ready right after
+ * the last one and a result that is known to be wrong is rejected without waiting for the remaining fragments.
+ * With spillToDisk the tuples received are kept in SpillFiles, deleted by discard(), instead of the heap.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public abstract class IntegrityVerifier {
+    // Markers not received yet
+    protected final Set<Pair<String, String>> markers;
+    protected int markerCounter;
+    // Tuples received so far, markers excluded
+    protected final Collection<Triple<String, String, String>> result;
+    private final boolean spillToDisk;
+    private final List<SpillFile> spills;
+    private int initialSize;
+    private long initialByteSize;
+    private int totalControlTuples;
+    private long finalByteSize;
+    // Wall-clock time of the checks, from the first fragment observed to the latest check (nanoseconds)
+    private boolean started;
+    private long startTime;
+    private long elapsed;
+
+    protected IntegrityVerifier(Set<Pair<String, String>> markers, int numberOfMarkers, boolean spillToDisk) {
+        this.markers = markers;
+        this.markerCounter = numberOfMarkers;
+        this.spillToDisk = spillToDisk;
+        this.spills = new ArrayList<>();
+        this.result = this.newResult();
+    }
+
+    public static IntegrityVerifier create(QueryMessage queryMessage, Set<Pair<String, String>> markers,
+                                           boolean spillToDisk) {
+        if (queryMessage.getUseOccurrences()) {
+            return new OccurrenceIntegrityVerifier(queryMessage, markers, spillToDisk);
+        }
+        return new TwinIntegrityVerifier(queryMessage, markers, spillToDisk);
+    }
+
+    // Check a decrypted fragment: throws as soon as the result cannot be correct
+    public void observe(List<Triple<String, String, String>> fragment) throws IntegrityViolationException {
+        long startTime = System.nanoTime();
+        List<Triple<String, String, String>> cleaned = this.clean(fragment);
+        synchronized (this) {
+            if (!this.started || startTime - this.startTime < 0) {
+                // Fragments are observed on several threads: the first one may not get the lock first
+                this.started = true;
+                this.startTime = startTime;
+            }
+            try {
+                this.initialSize += cleaned.size();
+                this.initialByteSize += IntegrityVerifier.sizeOfTripleList(cleaned);
+                for (Triple<String, String, String> t : cleaned) {
+                    if (t.getLeft().startsWith("marker")) {
+                        this.markerCounter--;
+                        assert t.getMiddle().equals(t.getRight());
+                        this.markers.remove(Pair.of(Encryption.getPrefix(t.getMiddle(), "|"), t.getLeft()));
+                    } else {
+                        this.observeTuple(t);
+                    }
+                }
+            } finally {
+                this.elapsed = System.nanoTime() - this.startTime;
+            }
+        }
+    }
+
+    // Verdict once every fragment has been observed: the result without control tuples
+    public synchronized Collection<Triple<String, String, String>> finish() throws IntegrityViolationException {
+        if (!this.started) {
+            this.started = true;
+            this.startTime = System.nanoTime();
+        }
+        try {
+            return this.verify();
+        } finally {
+            this.elapsed = System.nanoTime() - this.startTime;
+        }
+    }
+
+    // Remove the salts added by the storage servers
+    protected List<Triple<String, String, String>> clean(List<Triple<String, String, String>> fragment) {
+        List<Triple<String, String, String>> cleaned = new ArrayList<>(fragment.size());
+        for (Triple<String, String, String> t : fragment) {
+            cleaned.add(Encryption.removeSalt(t));
+        }
+        return cleaned;
+    }
+
+    protected abstract void observeTuple(Triple<String, String, String> t) throws IntegrityViolationException;
+
+    protected abstract Collection<Triple<String, String, String>> verify() throws IntegrityViolationException;
+
+    // Delete the tuples spilled to disk: the results returned by finish() cannot be used anymore
+    public synchronized void discard() {
+        for (SpillFile spill : this.spills) {
+            spill.delete();
+        }
+        this.spills.clear();
+    }
+
+    // Empty collection for a (partial) result, on disk with spillToDisk
+    protected Collection<Triple<String, String, String>> newResult() {
+        if (!this.spillToDisk) {
+            return new ArrayList<>();
+        }
+        SpillFile spill = new SpillFile();
+        this.spills.add(spill);
+        return spill;
+    }
+
+    protected void accept(Collection<Triple<String, String, String>> cleanedResult) {
+        this.totalControlTuples = this.initialSize - cleanedResult.size();
+        this.finalByteSize = this.initialByteSize - IntegrityVerifier.sizeOfTripleList(cleanedResult);
+    }
+
+    protected void reject(int totalControlTuples, long finalByteSize) {
+        this.totalControlTuples = totalControlTuples;
+        this.finalByteSize = finalByteSize;
+    }
+
+    protected int getInitialSize() {
+        return this.initialSize;
+    }
+
+    protected long getInitialByteSize() {
+        return this.initialByteSize;
+    }
+
+    public synchronized int getTotalControlTuples() {
+        return this.totalControlTuples;
+    }
+
+    public synchronized long getFinalByteSize() {
+        return this.finalByteSize;
+    }
+
+    // Wall-clock time from the first fragment observed to the verdict, in milliseconds
+    public synchronized long getElapsed() {
+        return this.elapsed / 1000000;
+    }
+
+    protected static long sizeOfTripleList(Collection<Triple<String, String, String>> tupleList) {
+        if (tupleList instanceof SpillFile spill) {
+            return spill.getLength();
+        }
+        long totalSize = 0;
+        for (var tuple: tupleList) {
+            totalSize += tuple.getLeft().length();
+            totalSize += tuple.getMiddle().length();
+            totalSize += tuple.getRight().length();
+        }
+        return totalSize;
+    }
+
+    protected static long sizeOfMarkers(Set<Pair<String, String>> tupleList) {
+        long totalSize = 0;
+        for (var tuple: tupleList) {
+            totalSize += tuple.getLeft().length() * 2L;
+            totalSize += tuple.getRight().length() * 3L;
+            totalSize += 2;
+        }
+        return totalSize;
+    }
+}
@@ -0,0 +1,117 @@
+package client;
+
+import communication.QueryMessage;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The OccurrenceIntegrityVerifier class.
+ * Integrity checks with markers and occurrences: every join value must be received as many times as the product
+ * of its occurrences in L and in R. A join value received more times than that rejects the result immediately.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class OccurrenceIntegrityVerifier extends IntegrityVerifier {
+    private final boolean removeDummies;
+    // Join value -> {frequency in L, frequency in R, occurrences in the result}
+    private final Map<String, int[]> occurrences;
+
+    public OccurrenceIntegrityVerifier(QueryMessage queryMessage, Set<Pair<String, String>> markers,
+                                       boolean spillToDisk) {
+        super(markers, queryMessage.getNumberOfMarkers(), spillToDisk);
+        this.removeDummies = queryMessage.getWorkers().size() > 1;
+        this.occurrences = new HashMap<>();
+    }
+
+    @Override
+    protected List<Triple<String, String, String>> clean(List<Triple<String, String, String>> fragment) {
+        List<Triple<String, String, String>> cleaned = super.clean(fragment);
+        if (!this.removeDummies) {
+            return cleaned;
+        }
+        // Format example:
+        // Regular tuple: (Jerrie%%1,1-L|Jerrie%%1|32|1,5-R|Jerrie%%1|Shock|5)
+        // Marker: (marker_7,-8_m|marker_7,-8_m|marker_7)
+        // Dummy tuple: (Jerrilee%%4,2-L|Jerrilee%%4|48|1,dummy|Jerrilee%%4|dummy|dummy)
+        List<Triple<String, String, String>> result = new ArrayList<>(cleaned.size());
+        for (var t: cleaned) {
+            if (!t.getMiddle().toLowerCase().contains("dummy|") && !t.getRight().toLowerCase().contains("dummy|")) {
+                if (t.getLeft().contains("%%")) {
+                    result.add(Triple.of(
+                            t.getLeft().replaceFirst("%%\\d+", ""),
+                            t.getMiddle().replaceFirst("%%\\d+", ""),
+                            t.getRight().replaceFirst("%%\\d+", "")
+                    ));
+                } else {
+                    result.add(t);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected void observeTuple(Triple<String, String, String> t) {
+        // The occurrences of the join value in L and in R are the last field of the two payloads
+        int endL = t.getMiddle().lastIndexOf('|');
+        int endR = t.getRight().lastIndexOf('|');
+        int[] counter = this.occurrences.get(t.getLeft());
+        if (counter == null) {
+            counter = new int[] {
+                    Integer.parseInt(t.getMiddle(), endL + 1, t.getMiddle().length(), 10),
+                    Integer.parseInt(t.getRight(), endR + 1, t.getRight().length(), 10),
+                    0
+            };
+            this.occurrences.put(t.getLeft(), counter);
+        }
+        counter[2]++;
+        this.result.add(Triple.of(t.getLeft(), t.getMiddle().substring(0, endL), t.getRight().substring(0, endR)));
+        if (counter[2] > counter[0] * counter[1]) {
+            // No further fragment can fix a join value received too many times
+            throw this.violation(this.wrongOccurrences());
+        }
+    }
+
+    @Override
+    protected Collection<Triple<String, String, String>> verify() {
+        Map<String, Integer> joinValuesWithWrongOccurrences = this.wrongOccurrences();
+        if (this.markerCounter > 0 || !joinValuesWithWrongOccurrences.isEmpty()) {
+            throw this.violation(joinValuesWithWrongOccurrences);
+        }
+        this.accept(this.result);
+        return this.result;
+    }
+
+    private Map<String, Integer> wrongOccurrences() {
+        Map<String, Integer> joinValuesWithWrongOccurrences = new HashMap<>();
+        for (Map.Entry<String, int[]> e : this.occurrences.entrySet()) {
+            int[] counter = e.getValue();
+            int remainingOccurrences = counter[0] * counter[1] - counter[2];
+            if (remainingOccurrences != 0) {
+                joinValuesWithWrongOccurrences.put(e.getKey(), remainingOccurrences);
+            }
+        }
+        return joinValuesWithWrongOccurrences;
+    }
+
+    private IntegrityViolationException violation(Map<String, Integer> joinValuesWithWrongOccurrences) {
+        long wrongOccurrencesSize = 0;
+        for (Map.Entry<String, Integer> e : joinValuesWithWrongOccurrences.entrySet()) {
+            int[] counter = this.occurrences.get(e.getKey());
+            wrongOccurrencesSize += (String.valueOf(counter[0]).length() + String.valueOf(counter[1]).length() + 2L)
+                    * e.getValue();
+        }
+        this.reject(this.getInitialSize() - this.result.size() + this.markerCounter,
+                this.getInitialByteSize() - IntegrityVerifier.sizeOfTripleList(this.result)
+                        + IntegrityVerifier.sizeOfMarkers(this.markers) + wrongOccurrencesSize);
+        return new IntegrityViolationException(this.markers, joinValuesWithWrongOccurrences);
+    }
+}
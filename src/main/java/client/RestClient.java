@@ -41,6 +41,7 @@ public class RestClient {
     private static final String QUERY_MSG_PATH = "query/process";
     private static final String SEMI_JOIN_PATH = "query/semi-join";
     private static final String NUMBER_OF_SALTS_PATH = "query/number-of-salts";
+    private static final String CANCEL_QUERY_PATH = "cancel";
 
     private static final ClientConfig clientConfig = new ClientConfig();
     private static final Client client = ClientBuilder.newClient(clientConfig);
@@ -50,6 +51,8 @@ public class RestClient {
     private static String storageServerAddrR;
     private static int storageServerPortL;
     private static int storageServerPortR;
+    private static String computationalServerAddr;
+    private static int computationalServerPort;
 
     private static String dbUrl;
     public static Connection connect;
@@ -61,9 +64,12 @@ public class RestClient {
     private static String joinAttributeFilePath;
     private static SecretKey encryptionKey;
     private static byte[] encryptionVector;
+    private static EncryptionContext encryptionContext;
 
     private static SecretKey hashKey;
 
+    private static String queryId;
+
     public static void main(String[] args) {
         // CREATE AND START SERVER THREAD
         Logger.info(RestClient.class, Arrays.toString(args), LogLevel.REQUIRED);
@@ -91,13 +97,16 @@ public class RestClient {
         Map<String, String> clientParams = simulationConfigFile.getClient();
         Map<String, String> serverLParams = simulationConfigFile.getStorageServer1();
         Map<String, String> serverRParams = simulationConfigFile.getStorageServer2();
-        assert clientParams != null && serverRParams != null && serverLParams != null;
+        Map<String, String> cspParams = simulationConfigFile.getComputationalServer();
+        assert clientParams != null && serverRParams != null && serverLParams != null && cspParams != null;
         RestClient.dbUrl = "jdbc:derby:" + clientParams.get("dbPath");
         RestClient.clientTableName = clientParams.get("tableName");
         RestClient.storageServerAddrL = serverLParams.get("ipAddr");
         RestClient.storageServerAddrR = serverRParams.get("ipAddr");
         RestClient.storageServerPortL = Integer.parseInt(serverLParams.get("port"));
         RestClient.storageServerPortR = Integer.parseInt(serverRParams.get("port"));
+        RestClient.computationalServerAddr = cspParams.get("ipAddr");
+        RestClient.computationalServerPort = Integer.parseInt(cspParams.get("port"));
 
         // START DB CONNECTION
         RestClient.connect = ModelUtils.startDBConnection(RestClient.dbUrl);
@@ -147,7 +156,9 @@ public class RestClient {
         assert RestClient.clientConfigFile != null;
         RestClient.encryptionKey = Encryption.createAESKey();
         RestClient.encryptionVector = Encryption.createInitializationVector();
+        RestClient.encryptionContext = new EncryptionContext(RestClient.encryptionKey, RestClient.encryptionVector);
         RestClient.hashKey = Encryption.createSHA3Key();
+        RestClient.queryId = UUID.randomUUID().toString();
         TwinCondition twinCondition = clientConfigFile.getTwinCondition();
         List<String> workers = clientConfigFile.getWorkers();
         boolean isSemiJoin = clientConfigFile.getIsSemiJoin();
@@ -165,6 +176,7 @@ public class RestClient {
         );
 
         QueryMessage queryMessageL = RestClient.clientConfigFile.getQueryMessages().get("L");
+        queryMessageL.setQueryId(RestClient.queryId);
         queryMessageL.setAESkey(encryptionString);
         queryMessageL.setAESinitVector(RestClient.getEncryptionVector());
         queryMessageL.setSHAkey(hashString);
@@ -178,6 +190,7 @@ public class RestClient {
         queryMessageL.setReplicationFactor(replicationFactor);
 
         QueryMessage queryMessageR = RestClient.clientConfigFile.getQueryMessages().get("R");
+        queryMessageR.setQueryId(RestClient.queryId);
         queryMessageR.setAESkey(encryptionString);
         queryMessageR.setAESinitVector(RestClient.getEncryptionVector());
         queryMessageR.setSHAkey(hashString);
@@ -257,6 +270,14 @@ public class RestClient {
         return RestClient.encryptionVector;
     }
 
+    public static String getQueryId() {
+        return RestClient.queryId;
+    }
+
+    public static EncryptionContext getEncryptionContext() {
+        return RestClient.encryptionContext;
+    }
+
     public static ClientConfigFile getClientConfigFile() {
         return RestClient.clientConfigFile;
     }
@@ -300,4 +321,16 @@ public class RestClient {
     public static String getNumberOfSaltsPath() {
         return RestClient.NUMBER_OF_SALTS_PATH;
     }
+
+    public static String getComputationalServerAddr() {
+        return RestClient.computationalServerAddr;
+    }
+
+    public static int getComputationalServerPort() {
+        return RestClient.computationalServerPort;
+    }
+
+    public static String getCancelQueryPath() {
+        return RestClient.CANCEL_QUERY_PATH;
+    }
 }
@@ -0,0 +1,170 @@
+package client;
+
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The SpillFile class.
+ * Append-only collection of triples stored in a file of the system's temporary directory,
+ * for join results larger than the heap.
+ * Triples are appended through a buffered stream and read back sequentially, in insertion order,
+ * every time the collection is iterated. I/O failures are thrown as UncheckedIOException.
+ * Only the tuples are spilled: the verifiers' bookkeeping (twin copies, occurrences of the join values)
+ * still grows with the result on the heap, so spilling does not bound the memory used by the client.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class SpillFile extends AbstractCollection<Triple<String, String, String>> {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final Path path;
+    private final DataOutputStream out;
+    // Readers still open, closed when the file is deleted
+    private final List<DataInputStream> readers;
+    private int size;
+    // Characters of the triples, as counted by IntegrityVerifier.sizeOfTripleList
+    private long length;
+
+    public SpillFile() {
+        try {
+            this.path = Files.createTempFile("result-", ".spill");
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.path), BUFFER_SIZE));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.readers = new ArrayList<>();
+        this.size = 0;
+        this.length = 0;
+    }
+
+    @Override
+    public synchronized boolean add(Triple<String, String, String> t) {
+        try {
+            this.write(t.getLeft());
+            this.write(t.getMiddle());
+            this.write(t.getRight());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.size++;
+        this.length += t.getLeft().length() + t.getMiddle().length() + t.getRight().length();
+        return true;
+    }
+
+    @Override
+    public synchronized Iterator<Triple<String, String, String>> iterator() {
+        try {
+            this.out.flush();
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.path),
+                    BUFFER_SIZE));
+            this.readers.add(in);
+            return new Reader(in, this.size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public synchronized long getLength() {
+        return this.length;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    // Close the streams and remove the file: the collection cannot be used anymore
+    public synchronized void delete() {
+        try {
+            for (DataInputStream in : this.readers) {
+                in.close();
+            }
+            this.readers.clear();
+            this.out.close();
+            Files.deleteIfExists(this.path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        this.out.writeInt(bytes.length);
+        this.out.write(bytes);
+    }
+
+    private static String read(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "SpillFile{" +
+                "path=" + path +
+                ", size=" + size +
+                '}';
+    }
+
+    // Sequential reader of the triples written when it was opened
+    private final class Reader implements Iterator<Triple<String, String, String>> {
+        private final DataInputStream in;
+        private int remaining;
+
+        private Reader(DataInputStream in, int size) {
+            this.in = in;
+            this.remaining = size;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.remaining > 0;
+        }
+
+        @Override
+        public Triple<String, String, String> next() {
+            if (this.remaining == 0) {
+                throw new NoSuchElementException();
+            }
+            try {
+                Triple<String, String, String> t = Triple.of(SpillFile.read(this.in), SpillFile.read(this.in),
+                        SpillFile.read(this.in));
+                if (--this.remaining == 0) {
+                    this.close();
+                }
+                return t;
+            } catch (EOFException e) {
+                throw new UncheckedIOException("Spill file " + SpillFile.this.path + " truncated", e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void close() throws IOException {
+            synchronized (SpillFile.this) {
+                SpillFile.this.readers.remove(this.in);
+            }
+            this.in.close();
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package client;
+
+import communication.QueryMessage;
+import communication.TwinCondition;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import utility.TwinHash;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The TwinIntegrityVerifier class.
+ * Integrity checks with markers and twins: every tuple satisfying the twin condition
+ * must be received replicationFactor times.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class TwinIntegrityVerifier extends IntegrityVerifier {
+    private final int replicationFactor;
+    private final Predicate<String> twinCondition;
+    // Copies received of every twinned triple
+    private final Map<Triple<String, String, String>, int[]> twinCopies;
+
+    public TwinIntegrityVerifier(QueryMessage queryMessage, Set<Pair<String, String>> markers, boolean spillToDisk) {
+        super(markers, queryMessage.getNumberOfMarkers(), spillToDisk);
+        this.replicationFactor = queryMessage.getReplicationFactor();
+        this.twinCopies = new HashMap<>();
+        TwinCondition cTwin = queryMessage.getTwinCondition();
+        List<String> values = cTwin.getValues();
+        if (values != null && !values.isEmpty()) {
+            Set<String> twinValues = new HashSet<>(values);
+            this.twinCondition = twinValues::contains;
+        } else {
+            int invPTwin = (int) Math.floor(1 / cTwin.getPTwin());
+            TwinHash twinHash = TwinHash.create(cTwin.getHashFunction(), RestClient.getHashKey());
+            this.twinCondition = joinValue -> twinHash.isTwin(joinValue, invPTwin);
+        }
+    }
+
+    @Override
+    protected void observeTuple(Triple<String, String, String> t) {
+        if (this.twinCondition.test(t.getLeft())) {
+            this.twinCopies.computeIfAbsent(t, k -> new int[1])[0]++;
+        }
+        this.result.add(t);
+    }
+
+    @Override
+    protected Collection<Triple<String, String, String>> verify() throws IntegrityViolationException {
+        // Every complete group of replicationFactor copies is a verified twin: its first replicationFactor - 1 copies
+        // are dropped from the result, the copies of an incomplete group are missing their twins
+        List<Triple<String, String, String>> T = new ArrayList<>();
+        for (Map.Entry<Triple<String, String, String>, int[]> copies : this.twinCopies.entrySet()) {
+            int n = copies.getValue()[0];
+            int groups = this.replicationFactor > 0 ? n / this.replicationFactor : 0;
+            for (int i = groups * this.replicationFactor; i < n; i++) {
+                T.add(copies.getKey());
+            }
+            copies.getValue()[0] = groups * (this.replicationFactor - 1);
+        }
+
+        Collection<Triple<String, String, String>> cleanedResult = this.newResult();
+        for (Triple<String, String, String> t : this.result) {
+            int[] toDrop = this.twinCopies.get(t);
+            if (toDrop != null && toDrop[0] > 0) {
+                toDrop[0]--;
+            } else {
+                cleanedResult.add(t);
+            }
+        }
+
+        if (this.markerCounter > 0 || !T.isEmpty()) {
+            this.reject(this.getInitialSize() - cleanedResult.size() + this.markerCounter + T.size(),
+                    this.getInitialByteSize() - IntegrityVerifier.sizeOfTripleList(cleanedResult)
+                            + IntegrityVerifier.sizeOfMarkers(this.markers) + IntegrityVerifier.sizeOfTripleList(T));
+            throw new IntegrityViolationException(this.markers, new HashSet<>(T));
+        }
+        this.accept(cleanedResult);
+        return cleanedResult;
+    }
+}
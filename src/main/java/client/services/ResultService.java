@@ -1,17 +1,20 @@
 package client.services;
 
+import client.IntegrityVerifier;
 import client.IntegrityViolationException;
 import client.TamperingException;
 import client.RestClient;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import communication.CancelQueryMessage;
+import communication.QueryId;
 import communication.QueryMessage;
 import communication.ResultMessage;
-import communication.TwinCondition;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
+import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import org.apache.commons.lang3.tuple.MutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 import server.ComputationalServer;
@@ -21,12 +24,20 @@ import javax.crypto.BadPaddingException;
 import javax.crypto.IllegalBlockSizeException;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.math.BigInteger;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * The ResultService class.
@@ -40,19 +51,24 @@ import java.util.stream.Collectors;
 @Path("")
 public class ResultService {
     public static final String CLIENT_TEMP_FILE_PATH = "client_temp.txt";
-    private static final Set<Pair<String, String>> remainingMarkers = new HashSet<>();
-    private static final Set<Triple<String, String, String>> remainingTwins = new HashSet<>();
-    private static final Map<Integer, List<Triple<String, String, String>>> fragments = new ConcurrentHashMap<>();
-
-    private static final Map<String, Integer> joinValuesWithWrongOccurrences = new HashMap<>();
-    private static boolean useOccurences;
-    private static boolean isSemiJoin;
-    private static int totalControlTuples;
-
-    private static long initialByteSize;
-    private static long finalByteSize;
-    private static long startTime;
-    private static long elapsed;
+    // State of the queries whose result is being received, per query id
+    private static final Map<String, QueryResult> queries = new ConcurrentHashMap<>();
+    // Ids of the last rejected queries: their late fragments are refused instead of starting a new result
+    private static final int MAX_REJECTED_QUERIES = 64;
+    private static final Set<String> rejectedQueries = Collections.newSetFromMap(Collections.synchronizedMap(
+            new LinkedHashMap<>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return this.size() > ResultService.MAX_REJECTED_QUERIES;
+                }
+            }));
+    // Every fragment is decrypted and verified on the pool as soon as it arrives
+    private static final ExecutorService decryptionPool = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), r -> {
+                Thread thread = new Thread(r, "result-decryption");
+                thread.setDaemon(true);
+                return thread;
+            });
 
     // COUNTERS
     private static int markerCounter;
@@ -61,176 +77,170 @@ public class ResultService {
     @POST
     @Consumes({MediaType.APPLICATION_JSON})
     public Response process(String joinResultSerialized) {
-        FileWriter myWriter = null;
         try {
-            myWriter = new FileWriter(CLIENT_TEMP_FILE_PATH, true);
-            ResultMessage resultMessage = CustomJsonParser.deserializeObject(joinResultSerialized, ResultMessage.class);
-            fragments.put(resultMessage.getId(), resultMessage.getPartialResult());
-
-            Logger.info(ResultService.class, "Received fragment with id: " + resultMessage.getId() +
-                    " (" + fragments.size() + "/" + resultMessage.getNumberOfFragments() + ")", LogLevel.COMPLETE);
-            if (fragments.size() == resultMessage.getNumberOfFragments()) {
-                Logger.info(ResultService.class, "All fragments received!", LogLevel.COMPLETE);
-                List<Triple<String, String, String>> result = new ArrayList<>();
-                fragments.values().forEach(result::addAll);
-
-                List<Triple<String, String, String>> decryptedResult = new ArrayList<>(result.size());
-                for (Triple<String, String, String> t : result) {
-                    decryptedResult.add(ResultService.decryptTriple(t));
-                }
-                Logger.info(this, "Result BEFORE integrity checks and clean: " + decryptedResult, LogLevel.COMPLETE);
+            return this.process(CustomJsonParser.deserializeObject(joinResultSerialized, ResultMessage.class));
+        } catch (JsonProcessingException e) {
+            return this.rejectFragment(e);
+        }
+    }
 
-                ResultService.startTime = System.nanoTime();
-                QueryMessage queryMessage = RestClient.getClientConfigFile().getQueryMessages().get("L");
-                decryptedResult = decryptedResult.stream().map(Encryption::removeSalt).collect(Collectors.toList());
+    @Path("send-result")
+    @POST
+    @Consumes({BinaryCodec.MEDIA_TYPE})
+    public Response processBinary(InputStream joinResultSerialized) {
+        try {
+            return this.process(BinaryCodec.decodeResultMessage(joinResultSerialized));
+        } catch (IOException e) {
+            return this.rejectFragment(e);
+        }
+    }
 
-                ResultService.useOccurences = queryMessage.getUseOccurrences();
-                ResultService.isSemiJoin = queryMessage.getIsSemiJoin();
+    // The query of an unreadable fragment is unknown: only this request fails, the other queries go on
+    private Response rejectFragment(Exception e) {
+        Logger.err(this, e);
+        return Response.serverError().build();
+    }
 
-                if (ResultService.useOccurences && queryMessage.getWorkers().size() > 1) {
-                    decryptedResult = ResultService.removeSaltsAndDummy(decryptedResult);
-                }
+    private Response process(ResultMessage resultMessage) {
+        FileWriter myWriter = null;
+        String queryId = QueryId.normalize(resultMessage.getQueryId());
+        QueryResult query = null;
+        try {
+            query = queries.computeIfAbsent(queryId,
+                    k -> ResultService.rejectedQueries.contains(k) ? null : new QueryResult());
+            if (query == null) {
+                Logger.info(ResultService.class, "Discarded fragment with id: " + resultMessage.getId() +
+                        " of rejected query " + queryId, LogLevel.COMPLETE);
+                return Response.serverError().build();
+            }
+            int received = ResultService.submitFragment(queryId, query, resultMessage);
 
-                int initialSize = decryptedResult.size();
-                ResultService.initialByteSize = sizeOfTripleList(decryptedResult);
+            Logger.info(ResultService.class, "Received fragment with id: " + resultMessage.getId() +
+                    " of query " + queryId +
+                    " (" + received + "/" + resultMessage.getNumberOfFragments() + ")", LogLevel.COMPLETE);
+            if (received == resultMessage.getNumberOfFragments()) {
+                queries.remove(queryId, query);
+            }
+            if (query.failed) {
+                // The result is already rejected, there is no need to wait for the other fragments
+                return Response.serverError().build();
+            }
+            if (received != resultMessage.getNumberOfFragments()) {
+                return Response.ok().build();
+            }
 
-                if (ResultService.useOccurences) {
-                    decryptedResult = ResultService.checkIntegrityWithOccurrences(decryptedResult, queryMessage);
-                } else {
-                    decryptedResult = ResultService.checkIntegrity(decryptedResult, queryMessage);
-                }
-                Logger.info(this, "Result AFTER integrity checks and clean: " + decryptedResult, LogLevel.COMPLETE);
-
-                if (decryptedResult != null) {
-                    ResultService.totalControlTuples = initialSize - decryptedResult.size();
-                } else {
-                    // <table size>:<table count>:<total control tuples>:<control tuples size>:<tampering error>:<integrity error>:<elapsed_time_ms>
-                    myWriter.write("0 KB:0:" + ResultService.totalControlTuples + ":" + ResultService.finalByteSize +
-                            ":false:true:" + ResultService.elapsed + "\n");
-                    if (ResultService.useOccurences) {
-                        throw new IntegrityViolationException(remainingMarkers, joinValuesWithWrongOccurrences);
-                    } else {
-                        throw new IntegrityViolationException(remainingMarkers, remainingTwins);
-                    }
-                }
+            Logger.info(ResultService.class, "All fragments received!", LogLevel.COMPLETE);
+            ResultService.awaitFragments(query);
+            Collection<Triple<String, String, String>> decryptedResult;
+            try {
+                decryptedResult = query.failed ? null : query.verifier.finish();
+            } catch (IntegrityViolationException e) {
+                ResultService.rejectQuery(queryId, query, e);
+                decryptedResult = null;
+            }
+            if (decryptedResult == null) {
+                return Response.serverError().build();
+            }
+            Logger.info(this, "Result AFTER integrity checks and clean: " + decryptedResult, LogLevel.COMPLETE);
 
-                List<List<String>> resultRows = new ArrayList<>();
-                if (ResultService.isSemiJoin) {
-                    // Semi-join completion
-                    // 1. Extract tid for L and R from join result
-                    List<String> tidsL = decryptedResult.stream().map(t -> parseTid(t.getMiddle())).toList();
-                    List<String> tidsR = decryptedResult.stream().map(t -> parseTid(t.getRight())).toList();
-
-                    // 2. Make POST request to the storage servers to complete the
-                    Response responseL, responseR;
-                    responseL = Network.post(
-                            RestClient.getClient(),
-                            Network.createURL(RestClient.getStorageServerAddrL(), RestClient.getStorageServerPortL(), RestClient.getSemiJoinPath()),
-                            tidsL
-                    );
-                    responseR = Network.post(
-                            RestClient.getClient(),
-                            Network.createURL(RestClient.getStorageServerAddrR(), RestClient.getStorageServerPortR(), RestClient.getSemiJoinPath()),
-                            tidsR
-                    );
-
-                    // 3. Build final join result
-                    Map<String, Pair<String, String>> resultL = CustomJsonParser.deserializeStringToStringPairMap(
-                            responseL.readEntity(String.class)
-                    );
-
-                    Map<String, Pair<String, String>> resultR = CustomJsonParser.deserializeStringToStringPairMap(
-                            responseR.readEntity(String.class)
-                    );
-
-                    for (Triple<String, String, String> t: decryptedResult) {
-                        String tidL = ResultService.parseTid(t.getMiddle());
-                        String tidR = ResultService.parseTid(t.getRight());
-                        assert tidL != null && tidR != null;
-                        Pair<String, String> infoL = resultL.get(tidL);
-                        Pair<String, String> infoR = resultR.get(tidR);
-                        assert infoL != null && infoR != null;
-                        assert infoL.getLeft().equals(infoR.getLeft());
-                        resultRows.add(new ArrayList<>() {{
-                            add(tidL);
-                            add(infoL.getLeft());
-                            add(infoL.getRight());
-                            add(tidR);
-                            add(infoR.getLeft());
-                            add(infoR.getRight());
-                        }});
-                    }
-                } else {
-                    String[] splittedL, splittedR;
-                    for (Triple<String, String, String> t: decryptedResult) {
-                        splittedL = t.getMiddle().split("\\|");
-                        splittedR = t.getRight().split("\\|");
-                        String tidL = ResultService.parseTid(t.getMiddle());
-                        String tidR = ResultService.parseTid(t.getRight());
-                        assert tidL != null && tidR != null;
-                        assert splittedL[1].equals(splittedR[1]);
-                        assert splittedL.length == 3 && splittedR.length == 3;
-
-                        final String[] finalSplittedL = splittedL;
-                        final String[] finalSplittedR = splittedR;
-
-                        // Ignore occurrences if they are present,
-                        // assertions ensure that everything is ok!
-                        resultRows.add(new ArrayList<>() {{
-                            add(tidL);
-                            add(finalSplittedL[1]);
-                            add(finalSplittedL[2]);
-                            add(tidR);
-                            add(finalSplittedR[1]);
-                            add(finalSplittedR[2]);
-                        }});
-                    }
-                }
+            myWriter = new FileWriter(CLIENT_TEMP_FILE_PATH, true);
+            boolean isSemiJoin = RestClient.getClientConfigFile().getQueryMessages().get("L").getIsSemiJoin();
+            // Rows of the final result, built while they are inserted
+            Function<Triple<String, String, String>, List<String>> resultRow;
+            if (isSemiJoin) {
+                // Semi-join completion
+                // 1. Extract tid for L and R from join result
+                List<String> tidsL = decryptedResult.stream().map(t -> parseTid(t.getMiddle())).toList();
+                List<String> tidsR = decryptedResult.stream().map(t -> parseTid(t.getRight())).toList();
+
+                // 2. Make POST request to the storage servers to complete the
+                Response responseL, responseR;
+                responseL = Network.post(
+                        RestClient.getClient(),
+                        Network.createURL(RestClient.getStorageServerAddrL(), RestClient.getStorageServerPortL(), RestClient.getSemiJoinPath()),
+                        tidsL
+                );
+                responseR = Network.post(
+                        RestClient.getClient(),
+                        Network.createURL(RestClient.getStorageServerAddrR(), RestClient.getStorageServerPortR(), RestClient.getSemiJoinPath()),
+                        tidsR
+                );
+
+                // 3. Build final join result
+                Map<String, Pair<String, String>> resultL = CustomJsonParser.deserializeStringToStringPairMap(
+                        responseL.readEntity(String.class)
+                );
+
+                Map<String, Pair<String, String>> resultR = CustomJsonParser.deserializeStringToStringPairMap(
+                        responseR.readEntity(String.class)
+                );
+
+                resultRow = t -> {
+                    String tidL = ResultService.parseTid(t.getMiddle());
+                    String tidR = ResultService.parseTid(t.getRight());
+                    assert tidL != null && tidR != null;
+                    Pair<String, String> infoL = resultL.get(tidL);
+                    Pair<String, String> infoR = resultR.get(tidR);
+                    assert infoL != null && infoR != null;
+                    assert infoL.getLeft().equals(infoR.getLeft());
+                    return new ArrayList<>() {{
+                        add(tidL);
+                        add(infoL.getLeft());
+                        add(infoL.getRight());
+                        add(tidR);
+                        add(infoR.getLeft());
+                        add(infoR.getRight());
+                    }};
+                };
+            } else {
+                resultRow = t -> {
+                    String[] splittedL = t.getMiddle().split("\\|");
+                    String[] splittedR = t.getRight().split("\\|");
+                    String tidL = ResultService.parseTid(t.getMiddle());
+                    String tidR = ResultService.parseTid(t.getRight());
+                    assert tidL != null && tidR != null;
+                    assert splittedL[1].equals(splittedR[1]);
+                    assert splittedL.length == 3 && splittedR.length == 3;
+
+                    // Ignore occurrences if they are present,
+                    // assertions ensure that everything is ok!
+                    return new ArrayList<>() {{
+                        add(tidL);
+                        add(splittedL[1]);
+                        add(splittedL[2]);
+                        add(tidR);
+                        add(splittedR[1]);
+                        add(splittedR[2]);
+                    }};
+                };
+            }
 
-                // The final result is saved in the client DB
-                ResultService.insertDb(resultRows);
+            // The final result is saved in the client DB
+            ResultService.insertDb(decryptedResult, resultRow);
 
-                // <table size>:<table count>:<total control tuples>:<control tuples size>:<tampering error>:<integrity error>:<elapsed_time_ms>
-                myWriter.write(Statistics.getTableSize(RestClient.getDbUrl(), RestClient.connect)
-                        + ":" + Statistics.getTableCount(RestClient.getDbUrl(), RestClient.getClientTableName(), RestClient.connect)
-                        + ":" + ResultService.totalControlTuples
-                        + ":" + ResultService.finalByteSize
-                        + ":false:false:" + elapsed + "\n");
+            // <table size>:<table count>:<total control tuples>:<control tuples size>:<tampering error>:<integrity error>:<elapsed_time_ms>
+            myWriter.write(Statistics.getTableSize(RestClient.getDbUrl(), RestClient.connect)
+                    + ":" + Statistics.getTableCount(RestClient.getDbUrl(), RestClient.getClientTableName(), RestClient.connect)
+                    + ":" + query.verifier.getTotalControlTuples()
+                    + ":" + query.verifier.getFinalByteSize()
+                    + ":false:false:" + query.verifier.getElapsed() + "\n");
 
-                fragments.clear();
-                ModelUtils.closeDBConnection(RestClient.connect);
-            }
-        } catch (IOException e) {
-            fragments.clear();
-            ModelUtils.closeDBConnection(RestClient.connect);
-            Logger.err(this, e);
-            return Response.serverError().build();
-        } catch (IntegrityViolationException e) {
-            Logger.err(this, e, false);
-            remainingMarkers.clear();
-            remainingTwins.clear();
-            joinValuesWithWrongOccurrences.clear();
-            fragments.clear();
+            query.verifier.discard();
             ModelUtils.closeDBConnection(RestClient.connect);
-            return Response.serverError().build();
-        } catch (TamperingException e) {
-            Logger.err(this, e, false);
-            try {
-                // <table size>:<table count>:<total control tuples>:<control tuples size>:<tampering error>:<integrity error>:<elapsed_time_ms>
-                myWriter.write("0 KB:0:null:-1:true:false:-1\n");
-            } catch (IOException ex) {
-                fragments.clear();
-                ModelUtils.closeDBConnection(RestClient.connect);
-                Logger.err(this, e, false);
-                return Response.serverError().build();
+        } catch (IOException | UncheckedIOException e) {
+            ResultService.discardFragments(queryId);
+            if (query != null) {
+                // Already removed from the queries if this was the last fragment
+                query.verifier.discard();
             }
-            fragments.clear();
             ModelUtils.closeDBConnection(RestClient.connect);
+            Logger.err(this, e);
             return Response.serverError().build();
         } finally {
             try {
-                assert myWriter != null;
-                myWriter.close();
+                if (myWriter != null) {
+                    myWriter.close();
+                }
             } catch (IOException e) {
                 Logger.err(this, e);
             }
@@ -238,185 +248,141 @@ public class ResultService {
         return Response.ok().build();
     }
 
-    private static List<Triple<String, String, String>> removeSaltsAndDummy(List<Triple<String, String, String>> decryptedResult) {
-        // Format example:
-        // Regular tuple: (Jerrie%%1,1-L|Jerrie%%1|32|1,5-R|Jerrie%%1|Shock|5)
-        // Marker: (marker_7,-8_m|marker_7,-8_m|marker_7)
-        // Dummy tuple: (Jerrilee%%4,2-L|Jerrilee%%4|48|1,dummy|Jerrilee%%4|dummy|dummy)
-        List<Triple<String, String, String>> result = new ArrayList<>();
-        for (var t: decryptedResult) {
-            if (!t.getMiddle().toLowerCase().contains("dummy|") && !t.getRight().toLowerCase().contains("dummy|")) {
-                if (t.getLeft().contains("%%")) {
-                    result.add(Triple.of(
-                            t.getLeft().replaceFirst("%%\\d+", ""),
-                            t.getMiddle().replaceFirst("%%\\d+", ""),
-                            t.getRight().replaceFirst("%%\\d+", "")
-                    ));
-                } else {
-                    result.add(t);
-                }
+    // Verify a fragment on the decryption pool: returns the number of distinct fragments received
+    private static int submitFragment(String queryId, QueryResult query, ResultMessage resultMessage) {
+        List<Triple<String, String, String>> partialResult = resultMessage.getPartialResult();
+        Future<?> previous = query.fragments.put(resultMessage.getId(), ResultService.decryptionPool.submit(
+                () -> ResultService.verifyFragment(queryId, query, partialResult)));
+        return previous == null ? query.received.incrementAndGet() : query.received.get();
+    }
+
+    // Decrypt and verify a fragment, rejecting the whole query as soon as the fragment proves the result wrong
+    private static void verifyFragment(String queryId, QueryResult query, List<Triple<String, String, String>> partialResult) {
+        if (query.failed) {
+            return;
+        }
+        try {
+            List<Triple<String, String, String>> decryptedFragment = ResultService.decryptAll(partialResult);
+            query.verifier.observe(decryptedFragment);
+        } catch (TamperingException | IntegrityViolationException e) {
+            Logger.info(ResultService.class, "Rejecting the result of query " + queryId, LogLevel.COMPLETE);
+            if (ResultService.rejectQuery(queryId, query, e)) {
+                ResultService.cancelQuery(queryId);
             }
         }
-
-        return result;
     }
 
-    private static List<Triple<String, String, String>> checkIntegrityWithOccurrences(List<Triple<String, String, String>> J,
-                                                                                      QueryMessage queryMessage) {
-        int markerCounter = queryMessage.getNumberOfMarkers();
-
-        ResultService.markerCounter = 0;
-        Set<Pair<String, String>> M = Objects.requireNonNull(ResultService.generateMarkers(markerCounter,
-                queryMessage.getMinNumberOfMarkers(),
-                queryMessage.getMaxNumberOfMarkers(),
-                queryMessage.getWorkers()));
-
-        List<Triple<String, String, String>> result = new ArrayList<>(J);
-
-        Map<String, MutablePair<Integer, Integer>> expectedOccurrences = new HashMap<>();
-        Map<String, Pair<Integer, Integer>> frequencies = new HashMap<>();
+    // Ask the CSP to stop joining and sending the result of a rejected query
+    private static void cancelQuery(String queryId) {
+        try {
+            Response response = Network.post(
+                    RestClient.getClient(),
+                    Network.createURL(RestClient.getComputationalServerAddr(), RestClient.getComputationalServerPort(),
+                            RestClient.getCancelQueryPath()),
+                    new CancelQueryMessage(queryId)
+            );
+            Logger.info(ResultService.class, "Cancel query " + queryId + " response status: " + response.getStatus(),
+                    LogLevel.COMPLETE);
+            response.close();
+        } catch (ProcessingException e) {
+            // The remaining fragments are rejected anyway
+            Logger.err(ResultService.class, e);
+        }
+    }
 
-        for (Triple<String, String, String> t : J) {
-            String joinAttribute = t.getLeft();
-            if (t.getLeft().startsWith("marker")) {
-                markerCounter--;
-                assert t.getMiddle().equals(t.getRight());
-                M.remove(Pair.of(Encryption.getPrefix(t.getMiddle(), "|"), t.getLeft()));
-                result.remove(t);
+    // Reject the result of a query once: the verification of the fragments still pending is stopped
+    // and the query is forgotten, since the CSP may never send its remaining fragments.
+    // Returns false if the query had already been rejected
+    private static boolean rejectQuery(String queryId, QueryResult query, Exception e) {
+        synchronized (query) {
+            if (query.failed) {
+                return false;
+            }
+            query.failed = true;
+        }
+        // Recorded before the removal, so that a late fragment cannot open the query again
+        ResultService.rejectedQueries.add(queryId);
+        queries.remove(queryId, query);
+        // Not interrupting: the caller may be one of the verification tasks
+        query.fragments.values().forEach(fragment -> fragment.cancel(false));
+        query.verifier.discard();
+        Logger.err(ResultService.class, e, false);
+        try (FileWriter myWriter = new FileWriter(CLIENT_TEMP_FILE_PATH, true)) {
+            // <table size>:<table count>:<total control tuples>:<control tuples size>:<tampering error>:<integrity error>:<elapsed_time_ms>
+            if (e instanceof TamperingException) {
+                myWriter.write("0 KB:0:null:-1:true:false:-1\n");
             } else {
-                if (expectedOccurrences.containsKey(joinAttribute)) {
-                    expectedOccurrences.get(joinAttribute).setRight(expectedOccurrences.get(joinAttribute).getRight() + 1);
-                } else {
-                    int freqL = Integer.parseInt(Encryption.getSuffix(t.getMiddle(), "|"));
-                    int freqR = Integer.parseInt(Encryption.getSuffix(t.getRight(), "|"));
-                    expectedOccurrences.put(joinAttribute, MutablePair.of(freqL * freqR, 1));
-                    frequencies.put(joinAttribute, Pair.of(freqL, freqR));
-                }
-                result.remove(t);
-                result.add(Triple.of(t.getLeft(), t.getMiddle().substring(0, t.getMiddle().lastIndexOf('|')), t.getRight().substring(0, t.getRight().lastIndexOf('|'))));
+                myWriter.write("0 KB:0:" + query.verifier.getTotalControlTuples() + ":" +
+                        query.verifier.getFinalByteSize() + ":false:true:" + query.verifier.getElapsed() + "\n");
             }
+        } catch (IOException ex) {
+            Logger.err(ResultService.class, ex);
         }
+        ModelUtils.closeDBConnection(RestClient.connect);
+        return true;
+    }
 
-        for (Map.Entry<String, MutablePair<Integer,Integer>> e : expectedOccurrences.entrySet()) {
-            int remainingOccurrences = e.getValue().getLeft() - e.getValue().getRight();
-            if (remainingOccurrences != 0) {
-                ResultService.joinValuesWithWrongOccurrences.put(e.getKey(), remainingOccurrences);
+    // Wait for the verification of every fragment of a query
+    private static void awaitFragments(QueryResult query) throws IOException {
+        try {
+            for (Future<?> fragment : query.fragments.values()) {
+                if (!fragment.isCancelled()) {
+                    fragment.get();
+                }
             }
+        } catch (CancellationException e) {
+            // Only cancelled when the query is rejected
+            assert query.failed;
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while verifying the result of the query");
         }
+    }
 
-        long endTime = System.nanoTime();
-
-        if (markerCounter > 0 || !ResultService.joinValuesWithWrongOccurrences.isEmpty()) {
-            ResultService.remainingMarkers.addAll(M);
-            ResultService.totalControlTuples =  J.size() - result.size() + markerCounter;
-            ResultService.finalByteSize = ResultService.initialByteSize - sizeOfTripleList(result) + sizeOfMarkers(M)
-                  +  joinValuesWithWrongOccurrences.entrySet().stream()
-                                                    .mapToLong(t -> ((frequencies.get(t.getKey()).getLeft().toString().length() +
-                                                                        frequencies.get(t.getKey()).getRight().toString().length()
-                                                                        + 2L) * t.getValue())).sum();
-            ResultService.elapsed = (endTime - ResultService.startTime) / 1000000;
-            return null;
+    // Forget a query, stopping the verification of the fragments still pending
+    private static void discardFragments(String queryId) {
+        QueryResult query = queries.remove(queryId);
+        if (query != null) {
+            query.fragments.values().forEach(fragment -> fragment.cancel(true));
+            query.verifier.discard();
         }
-
-        ResultService.finalByteSize = ResultService.initialByteSize - sizeOfTripleList(result);
-        ResultService.elapsed = (endTime - ResultService.startTime) / 1000000;
-        return result;
     }
 
-    private static Triple<String, String, String> decryptTriple(Triple<String, String, String> t)
+    // Decrypt the three fields of every triple as a single column
+    private static List<Triple<String, String, String>> decryptAll(List<Triple<String, String, String>> result)
             throws TamperingException {
+        String[] cipherTexts = new String[result.size() * 3];
+        int i = 0;
+        for (Triple<String, String, String> t : result) {
+            cipherTexts[i++] = t.getLeft();
+            cipherTexts[i++] = t.getMiddle();
+            cipherTexts[i++] = t.getRight();
+        }
+        String[] plainTexts;
         try {
-            return Triple.of(
-                    Encryption.decrypt(t.getLeft(), RestClient.getEncryptionKey(), RestClient.getEncryptionVector()),
-                    Encryption.decrypt(t.getMiddle(), RestClient.getEncryptionKey(), RestClient.getEncryptionVector()),
-                    Encryption.decrypt(t.getRight(), RestClient.getEncryptionKey(), RestClient.getEncryptionVector()));
+            plainTexts = RestClient.getEncryptionContext().decryptAll(cipherTexts);
         } catch (IllegalBlockSizeException | BadPaddingException | IllegalArgumentException e) {
             throw new TamperingException();
         }
-    }
-
-    private static List<Triple<String, String, String>> checkIntegrity(List<Triple<String, String, String>> J,
-                                          QueryMessage queryMessage) {
-        TwinCondition cTwin = queryMessage.getTwinCondition();
-        List<String> values  = cTwin.getValues();
-        int markerCounter = queryMessage.getNumberOfMarkers();
-        int replicationFactor = queryMessage.getReplicationFactor();
-        ResultService.markerCounter = 0;
-        Set<Pair<String, String>> M = Objects.requireNonNull(ResultService.generateMarkers(markerCounter,
-                queryMessage.getMinNumberOfMarkers(),
-                queryMessage.getMaxNumberOfMarkers(),
-                queryMessage.getWorkers()));
-
-        List<Triple<String, String, String>> result = new ArrayList<>(J);
-        List<Triple<String, String, String>> T = new ArrayList<>();
-
-        if (values != null && !values.isEmpty()) {
-            for (Triple<String,String,String> t : J) {
-                if (t.getLeft().startsWith("marker")) {
-                    markerCounter--;
-                    assert t.getMiddle().equals(t.getRight());
-                    M.remove(Pair.of(Encryption.getPrefix(t.getMiddle(), "|"), t.getLeft()));
-                    result.remove(t);
-                } else if (values.contains(t.getLeft())) {
-                    int tCounter = Collections.frequency(T, t);
-                    if (tCounter == (replicationFactor - 1)) {
-                        for (int i = 0; i < replicationFactor - 1; i++) {
-                            T.remove(t);
-                            result.remove(t);
-                        }
-                    } else {
-                        T.add(t);
-                    }
-                }
-            }
-        } else {
-            BigInteger invPTwin = new BigInteger(String.valueOf((int) Math.floor(1 / cTwin.getPTwin())));
-
-            for (Triple<String,String,String> t : J) {
-                if (t.getLeft().startsWith("marker")) {
-                    markerCounter--;
-                    assert t.getMiddle().equals(t.getRight());
-                    M.remove(Pair.of(Encryption.getPrefix(t.getMiddle(), "|"), t.getLeft()));
-                    result.remove(t);
-                } else if ((Objects.requireNonNull(Encryption.hash(t.getLeft(), RestClient.getHashKey()))
-                        .mod(invPTwin).equals(BigInteger.ZERO))) {
-                    int tCounter = Collections.frequency(T, t);
-                    if (tCounter == (replicationFactor - 1)) {
-                        for (int i = 0; i < replicationFactor - 1; i++) {
-                            T.remove(t);
-                            result.remove(t);
-                        }
-                    } else {
-                        T.add(t);
-                    }
-                }
-            }
-        }
-
-        long endTime = System.nanoTime();
-
-        if (markerCounter > 0 || !T.isEmpty()) {
-            ResultService.remainingMarkers.addAll(M);
-            ResultService.remainingTwins.addAll(T);
-            ResultService.totalControlTuples = J.size() - result.size() + markerCounter + T.size();
-            ResultService.finalByteSize = ResultService.initialByteSize - sizeOfTripleList(result) + sizeOfMarkers(M) + sizeOfTripleList(T);
-            ResultService.elapsed = (endTime - ResultService.startTime) / 1000000;
-            return null;
+        List<Triple<String, String, String>> decryptedResult = new ArrayList<>(result.size());
+        for (i = 0; i < plainTexts.length; i += 3) {
+            decryptedResult.add(Triple.of(plainTexts[i], plainTexts[i + 1], plainTexts[i + 2]));
         }
-
-        ResultService.finalByteSize = ResultService.initialByteSize - sizeOfTripleList(result);
-        ResultService.elapsed = (endTime - ResultService.startTime) / 1000000;
-        return result;
+        return decryptedResult;
     }
 
-    private static void insertDb(List<List<String>> rows) {
+    private static void insertDb(Iterable<Triple<String, String, String>> result,
+                                 Function<Triple<String, String, String>, List<String>> resultRow) {
         try {
             PreparedStatement insertStatement = RestClient.connect.prepareStatement("INSERT INTO " +
                     RestClient.getClientTableName() + " VALUES (DEFAULT, ?,?,?,?,?,?)");
 
             int i = 0;
             RestClient.connect.setAutoCommit(false);
-            for (List<String> row: rows) {
+            for (Triple<String, String, String> t: result) {
+                List<String> row = resultRow.apply(t);
                 insertStatement.setString(1, row.get(0)); // Lid
                 insertStatement.setString(2, row.get(1)); // Lname
                 insertStatement.setString(3, row.get(2)); // Lage
@@ -425,11 +391,15 @@ public class ResultService {
                 insertStatement.setString(6, row.get(5)); // Rdisease
                 insertStatement.addBatch();
                 i++;
-                if (i % ModelUtils.BATCH_SIZE == 0 || i == rows.size()) {
+                if (i % ModelUtils.BATCH_SIZE == 0) {
                     insertStatement.executeBatch();
                     RestClient.connect.commit();
                 }
             }
+            if (i % ModelUtils.BATCH_SIZE != 0) {
+                insertStatement.executeBatch();
+                RestClient.connect.commit();
+            }
         } catch (SQLException e) {
             Logger.err(ResultService.class, e);
         } finally {
@@ -480,7 +450,7 @@ public class ResultService {
         do {
             String m = getNextMarker();
             String w = ComputationalServer.assignTupleToWorker(Objects.requireNonNull(
-                    Encryption.encrypt(m, RestClient.getEncryptionKey(), RestClient.getEncryptionVector())), l);
+                    RestClient.getEncryptionContext().encrypt(m)), l);
             if ((numMarkers.get(w) < nMin) || ((numMarkers.get(w) < nMax && spare > 0))) {
                 numMarkers.put(w, numMarkers.get(w) + 1);
                 if (numMarkers.get(w) > nMin) {
@@ -498,23 +468,28 @@ public class ResultService {
         return "marker_" + ResultService.markerCounter++;
     }
 
-    private static long sizeOfTripleList(List<Triple<String, String, String>> tupleList) {
-        long totalSize = 0;
-        for (var tuple: tupleList) {
-            totalSize += tuple.getLeft().length();
-            totalSize += tuple.getMiddle().length();
-            totalSize += tuple.getRight().length();
-        }
-        return totalSize;
+    private static Set<Pair<String, String>> generateMarkers(QueryMessage queryMessage) {
+        ResultService.markerCounter = 0;
+        return Objects.requireNonNull(ResultService.generateMarkers(queryMessage.getNumberOfMarkers(),
+                queryMessage.getMinNumberOfMarkers(),
+                queryMessage.getMaxNumberOfMarkers(),
+                queryMessage.getWorkers()));
     }
 
-    private static long sizeOfMarkers(Set<Pair<String, String>> tupleList) {
-        long totalSize = 0;
-        for (var tuple: tupleList) {
-            totalSize += tuple.getLeft().length() * 2L;
-            totalSize += tuple.getRight().length() * 3L;
-            totalSize += 2;
+    // Fragments received of the result of a query, verified by a single verifier
+    private static class QueryResult {
+        private final IntegrityVerifier verifier;
+        private final Map<Integer, Future<?>> fragments;
+        private final AtomicInteger received;
+        private volatile boolean failed;
+
+        private QueryResult() {
+            QueryMessage queryMessage = RestClient.getClientConfigFile().getQueryMessages().get("L");
+            this.verifier = IntegrityVerifier.create(queryMessage, ResultService.generateMarkers(queryMessage),
+                    RestClient.getClientConfigFile().getSpillToDisk());
+            this.fragments = new ConcurrentHashMap<>();
+            this.received = new AtomicInteger();
+            this.failed = false;
         }
-        return totalSize;
     }
-}
\ No newline at end of file
+}
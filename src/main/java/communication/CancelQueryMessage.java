@@ -0,0 +1,40 @@
+package communication;
+
+import jakarta.xml.bind.annotation.XmlAccessType;
+import jakarta.xml.bind.annotation.XmlAccessorType;
+import jakarta.xml.bind.annotation.XmlRootElement;
+
+/**
+ * The CancelQueryMessage class.
+ * Payload for the POST request to /cancel.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+@XmlRootElement
+@XmlAccessorType(XmlAccessType.FIELD)
+public class CancelQueryMessage {
+    private String queryId;
+
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+
+    public CancelQueryMessage() {
+    }
+
+    public CancelQueryMessage(String queryId) {
+        this.queryId = queryId;
+    }
+
+    @Override
+    public String toString() {
+        return "CancelQueryMessage{" +
+                "queryId=" + queryId +
+                '}';
+    }
+}
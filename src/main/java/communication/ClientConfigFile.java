@@ -26,6 +26,8 @@ public class ClientConfigFile {
     private int numberOfMarkers;
     private int replicationFactor;
     private boolean useOccurrences;
+    // Keep the join result on disk while it is received and verified
+    private boolean spillToDisk;
 
     public Map<String, QueryMessage> getQueryMessages() {
         return queryMessages;
@@ -67,6 +69,14 @@ public class ClientConfigFile {
         this.useOccurrences = useOccurrences;
     }
 
+    public boolean getSpillToDisk() {
+        return spillToDisk;
+    }
+
+    public void setSpillToDisk(boolean spillToDisk) {
+        this.spillToDisk = spillToDisk;
+    }
+
     public int getMaxNumberOfMarkers() {
         return maxNumberOfMarkers;
     }
@@ -1,5 +1,6 @@
 package communication;
 
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import jakarta.xml.bind.annotation.XmlAccessType;
 import jakarta.xml.bind.annotation.XmlAccessorType;
 import jakarta.xml.bind.annotation.XmlRootElement;
@@ -16,11 +17,22 @@ import java.util.List;
  */
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
+// Query id, sender and join attribute first: the CSP can consume the relation while it is being parsed
+@JsonPropertyOrder({"queryId", "sender", "joinAttribute", "relation"})
 public class JoinQueryMessage {
+    private String queryId;
     private List<Pair<String,String>> relation;
     private int joinAttribute;
     private String sender;
 
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+
     public List<Pair<String, String>> getRelation() {
         return relation;
     }
@@ -54,10 +66,16 @@ public class JoinQueryMessage {
         this.sender = sender;
     }
 
+    public JoinQueryMessage(String queryId, List<Pair<String, String>> relation, int joinAttribute, String sender) {
+        this(relation, joinAttribute, sender);
+        this.queryId = queryId;
+    }
+
     @Override
     public String toString() {
         return "JoinQueryMessage{" +
-                "relation=" + relation +
+                "queryId=" + queryId +
+                ", relation=" + relation +
                 ", joinAttribute='" + joinAttribute +
                 ", sender=" + sender + '\'' +
                 '}';
@@ -0,0 +1,19 @@
+package communication;
+
+/**
+ * The QueryId class.
+ * Query id carried by the messages exchanged by the client and the servers.
+ * Messages not carrying one belong to the default query.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public final class QueryId {
+    public static final String DEFAULT = "default";
+
+    private QueryId() {}
+
+    public static String normalize(String queryId) {
+        return queryId == null || queryId.isBlank() ? QueryId.DEFAULT : queryId;
+    }
+}
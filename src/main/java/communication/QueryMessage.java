@@ -16,6 +16,7 @@ import java.util.List;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 public class QueryMessage {
+    private String queryId;
     private int minNumberOfMarkers;
     private int maxNumberOfMarkers;
     private int numberOfMarkers;
@@ -30,6 +31,14 @@ public class QueryMessage {
     private byte[] AESinitVector;
     private String SHAkey;
 
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+
     public int getMinNumberOfMarkers() {
         return minNumberOfMarkers;
     }
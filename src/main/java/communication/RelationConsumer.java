@@ -0,0 +1,15 @@
+package communication;
+
+/**
+ * The RelationConsumer interface.
+ * Receiver of a JoinQueryMessage read as a stream:
+ * the query id, the sender and the join attribute index are delivered before the relation's tuples.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public interface RelationConsumer {
+    void begin(String queryId, String sender, int joinAttribute);
+
+    void tuple(String left, String right);
+}
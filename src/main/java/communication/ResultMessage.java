@@ -18,10 +18,21 @@ import java.util.List;
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
 public class ResultMessage {
+    // Set on every fragment but the last when the CSP streams the result
+    public static final int UNKNOWN_NUMBER_OF_FRAGMENTS = -1;
+    private String queryId;
     private List<Triple<String,String,String>> partialResult;
     private int id;
     private int numberOfFragments;
 
+    public String getQueryId() {
+        return queryId;
+    }
+
+    public void setQueryId(String queryId) {
+        this.queryId = queryId;
+    }
+
     public List<Triple<String, String, String>> getPartialResult() {
         return partialResult;
     }
@@ -55,10 +66,17 @@ public class ResultMessage {
         this.numberOfFragments = numberOfFragments;
     }
 
+    public ResultMessage(String queryId, List<Triple<String, String, String>> partialResult, int id,
+                         int numberOfFragments) {
+        this(partialResult, id, numberOfFragments);
+        this.queryId = queryId;
+    }
+
     @Override
     public String toString() {
         return "ResultMessage{" +
-                "id=" + id +
+                "queryId=" + queryId +
+                ", id=" + id +
                 ", numberOfFragments=" + numberOfFragments +
                 '}';
     }
@@ -1,5 +1,7 @@
 package communication;
 
+import utility.TwinHashFunction;
+
 import java.util.List;
 
 /**
@@ -12,6 +14,8 @@ import java.util.List;
 public class TwinCondition {
 	private List<String> values;
 	private float pTwin;
+	// Keyed hash of the condition h(t[I]) % Math.floor(1/pTwin) == 0: TwinHash.DEFAULT_FUNCTION if not set
+	private TwinHashFunction hashFunction;
 
 	public TwinCondition() {}
 
@@ -38,6 +42,14 @@ public class TwinCondition {
 		this.pTwin = pTwin;
 	}
 
+	public TwinHashFunction getHashFunction() {
+		return hashFunction;
+	}
+
+	public void setHashFunction(TwinHashFunction hashFunction) {
+		this.hashFunction = hashFunction;
+	}
+
 	public List<String> getValues() {
 		return values;
 	}
@@ -29,6 +29,9 @@ public class DataGenerator {
     private final DataConfigFile dataConfigFile;
     private final Connection connect;
     private final Map<String,List<String>> entities;
+    // Occurrences of the join attribute, known once the params have been received
+    private OccurrenceIndex occurrences;
+    private final boolean newTable;
     private static Long seed;
     private static String joinAttributeFilePath;
 
@@ -37,8 +40,11 @@ public class DataGenerator {
         this.entities = new HashMap<>();
         StorageServer.setTableName(dataConfigFile.getTableName());
         this.connect = ModelUtils.startDBConnection(StorageServer.getDbUrl());
-        if (dataConfigFile.getGenerateNewData()) {
-            ModelUtils.clearTables(true, new ArrayList<>() {{ add("TABLER"); add("TABLEL"); }}, this.connect);
+        this.newTable = dataConfigFile.getGenerateNewData();
+        if (this.newTable) {
+            List<String> tableNames = new ArrayList<>() {{ add("TABLER"); add("TABLEL"); }};
+            ModelUtils.clearTables(true, tableNames, this.connect);
+            tableNames.forEach(OccurrenceIndex::invalidate);
             this.createTable();
         }
     }
@@ -87,11 +93,22 @@ public class DataGenerator {
         long numberOfTuples = this.dataConfigFile.getNumberOfTuples();
         List<Float> joinProportion = this.dataConfigFile.getJoinProportion();
 
+        // Only the occurrences of the current join attribute are counted: the indexes of the other columns
+        // become stale, the one of the join attribute is exact if the table has just been created
+        String tableName = this.dataConfigFile.getTableName();
+        OccurrenceIndex.invalidate(tableName);
+        this.occurrences = OccurrenceIndex.of(tableName, StorageServer.getJoinAttribute());
+        if (this.newTable) {
+            this.occurrences.reset();
+        }
+
         Map<String, String> attributeList = this.dataConfigFile.getTableSchema();
         attributeList.remove(StorageServer.getJoinAttribute());
         try {
             this.populateRelations(numberOfTuples, joinProportion, attributeList.keySet().iterator().next());
         } catch (SQLException e) {
+            // Some of the counted tuples may not have been inserted
+            this.occurrences.invalidate();
             Logger.err(this, e);
         } finally {
             ModelUtils.closeDBConnection(this.connect);
@@ -161,6 +178,7 @@ public class DataGenerator {
                                 .get(RNG.nextInt(0, this.entities.get(StorageServer.getJoinAttribute()).size()));
                     }
                     insertStatement.setString(1, joinAttrValue);
+                    this.occurrences.add(joinAttrValue);
                     insertStatement.setInt(2, RNG.nextInt(MIN_AGE, MAX_AGE));
                     insertStatement.addBatch();
                     if (i % ModelUtils.BATCH_SIZE == 0 || i == numberOfTuples - 1) {
@@ -179,6 +197,7 @@ public class DataGenerator {
                                 .get(RNG.nextInt(0, this.entities.get(StorageServer.getJoinAttribute()).size()));
                     }
                     insertStatement.setString(1, joinAttrValue);
+                    this.occurrences.add(joinAttrValue);
                     this.setVarcharAttrValue(attributeName, numberOfTuples, insertStatement, i);
                 }
             }
@@ -192,6 +211,7 @@ public class DataGenerator {
                         joinAttrValue = joinAttrValue + (randomProbabilityCounter++ % Integer.MAX_VALUE);
                     }
                     insertStatement.setString(1, joinAttrValue);
+                    this.occurrences.add(joinAttrValue);
                     insertStatement.setInt(2, RNG.nextInt(MIN_AGE, MAX_AGE));
                     insertStatement.addBatch();
                     if (i % ModelUtils.BATCH_SIZE == 0 || i == numberOfTuples - 1) {
@@ -208,6 +228,7 @@ public class DataGenerator {
                         joinAttrValue = joinAttrValue + (randomProbabilityCounter++ % Integer.MAX_VALUE);
                     }
                     insertStatement.setString(1, joinAttrValue);
+                    this.occurrences.add(joinAttrValue);
                     this.setVarcharAttrValue(attributeName, numberOfTuples, insertStatement, i);
                 }
             }
@@ -255,6 +276,7 @@ public class DataGenerator {
         if (intAttribute) {
             for (int j = 0; j < numberOfTimes; j++) {
                 insertStatement.setString(1, attributeValue);
+                this.occurrences.add(attributeValue);
                 insertStatement.setInt(2, RNG.nextInt(MIN_AGE, MAX_AGE));
                 insertStatement.addBatch();
                 if (j % ModelUtils.BATCH_SIZE == 0 || j == numberOfTimes - 1) {
@@ -265,6 +287,7 @@ public class DataGenerator {
         } else {
             for (int j = 0; j < numberOfTimes; j++) {
                 insertStatement.setString(1, attributeValue);
+                this.occurrences.add(attributeValue);
                 this.setVarcharAttrValue(attributeName, numberOfTimes, insertStatement, j);
             }
         }
@@ -0,0 +1,115 @@
+package model;
+
+import utility.LogLevel;
+import utility.Logger;
+import utility.ModelUtils;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The OccurrenceIndex class.
+ * Number of occurrences of every join attribute value of a table, kept by the storage server across queries.
+ * The index is updated by the only writer of the table (DataGenerator, which inserts tuples and never deletes them)
+ * and served to QueryHandler without aggregating the table again. When it is stale (never built, or invalidated
+ * after a failed write or a write counting another attribute) it is rebuilt from the table with a GROUP BY query.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class OccurrenceIndex {
+    private static final Map<String, OccurrenceIndex> indexes = new ConcurrentHashMap<>();
+    private final String tableName;
+    private final String joinAttribute;
+    private final Map<String, Integer> occurrences;
+    private boolean valid;
+
+    private OccurrenceIndex(String tableName, String joinAttribute) {
+        this.tableName = tableName;
+        this.joinAttribute = joinAttribute;
+        this.occurrences = new HashMap<>();
+        this.valid = false;
+    }
+
+    public static OccurrenceIndex of(String tableName, String joinAttribute) {
+        return OccurrenceIndex.indexes.computeIfAbsent(OccurrenceIndex.key(tableName, joinAttribute),
+                k -> new OccurrenceIndex(tableName, joinAttribute));
+    }
+
+    // Invalidate the indexes of a table modified outside of this class (e.g. dropped)
+    public static void invalidate(String tableName) {
+        String prefix = tableName.toUpperCase(Locale.ROOT) + ".";
+        OccurrenceIndex.indexes.forEach((key, index) -> {
+            if (key.startsWith(prefix)) {
+                index.invalidate();
+            }
+        });
+    }
+
+    public synchronized void add(String joinValue) {
+        if (this.valid) {
+            this.occurrences.merge(joinValue, 1, Integer::sum);
+        }
+    }
+
+    // The table has just been created or emptied
+    public synchronized void reset() {
+        this.occurrences.clear();
+        this.valid = true;
+    }
+
+    public synchronized void invalidate() {
+        this.occurrences.clear();
+        this.valid = false;
+    }
+
+    // Snapshot of the occurrences, rebuilding the index if stale: null if it cannot be rebuilt
+    public synchronized Map<String, Integer> getOccurrences(Connection connect) {
+        if (!this.valid && !this.rebuild(connect)) {
+            return null;
+        }
+        return new HashMap<>(this.occurrences);
+    }
+
+    private boolean rebuild(Connection connect) {
+        Logger.info(this, "Rebuilding the occurrence index of " + this.tableName + "." + this.joinAttribute,
+                LogLevel.COMPLETE);
+        ResultSet result = ModelUtils.queryDB("SELECT " + this.joinAttribute + ", COUNT (*)" +
+                " FROM " + this.tableName + " GROUP BY " + this.joinAttribute, connect);
+        if (result == null) {
+            return false;
+        }
+        this.occurrences.clear();
+        try {
+            while (result.next()) {
+                this.occurrences.put(result.getString(1), result.getInt(2));
+            }
+            result.close();
+        } catch (SQLException e) {
+            Logger.err(this, e);
+            this.occurrences.clear();
+            return false;
+        }
+        this.valid = true;
+        return true;
+    }
+
+    private static String key(String tableName, String joinAttribute) {
+        return (tableName + "." + joinAttribute).toUpperCase(Locale.ROOT);
+    }
+
+    @Override
+    public String toString() {
+        return "OccurrenceIndex{" +
+                "tableName=" + tableName +
+                ", joinAttribute=" + joinAttribute +
+                ", values=" + occurrences.size() +
+                ", valid=" + valid +
+                '}';
+    }
+}
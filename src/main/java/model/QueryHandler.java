@@ -5,6 +5,8 @@ import communication.DistributedJoinQueryMessage;
 import communication.JoinQueryMessage;
 import communication.QueryMessage;
 import communication.TwinCondition;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 import org.apache.commons.lang3.tuple.Pair;
 import server.ComputationalServer;
 import server.StorageServer;
@@ -14,11 +16,13 @@ import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -32,6 +36,7 @@ public class QueryHandler {
 	public static final String TWIN_TEMP_FILE_PATH = "twin_temp.txt";
 	public static final String OCCURRENCES_TEMP_FILE_PATH = "occurrences_temp.txt";
 	public static final String REGULAR_TEMP_FILE_PATH = "regular_temp.txt";
+	private final String queryId;
 	private final int minNumberOfMarkers;
 	private final int maxNumberOfMarkers;
 	private final int numberOfMarkers;
@@ -44,21 +49,25 @@ public class QueryHandler {
 	private final int numOfWorkers;
 	private final int minSaltLength;
 	private final String joinAttribute;
-	private final SecretKey aesKey;
-	private final byte[] initVector;
+	private final EncryptionContext encryption;
+	// Ciphertexts of the join attribute values, reused by the payload, the worker routing and the salting
+	private final CiphertextCache joinValues;
 	private final SecretKey sha3Key;
+	private final TwinHash twinHash;
 	private static final int JOIN_ATTR_INDEX = 0;
 	private static final String SELECT_ALL_QUERY_PREFIX = "SELECT * FROM ";
 	private final boolean semiJoin;
 	private int numberOfSalts;
 
 	private final static Object LOCK = new Object();
+	private static final int MAX_SEND_ATTEMPTS = 20;
+	private static final long RETRY_DELAY_MS = 250;
 
 	// COUNTERS
 	private int markerCounter;
-	private final Map<Integer, Integer> twinCounter;
 
 	public QueryHandler(QueryMessage queryMessage) {
+		this.queryId = queryMessage.getQueryId();
 		this.minNumberOfMarkers = queryMessage.getMinNumberOfMarkers();
 		this.maxNumberOfMarkers = queryMessage.getMaxNumberOfMarkers();
 		this.numberOfMarkers = queryMessage.getNumberOfMarkers();
@@ -71,13 +80,17 @@ public class QueryHandler {
 		this.minSaltLength = queryMessage.getMinSaltLength();
 		this.connect = ModelUtils.startDBConnection(StorageServer.getDbUrl());
 		this.markerCounter = 0;
-		this.twinCounter = new HashMap<>();
 		this.joinAttribute = StorageServer.getJoinAttribute();
 		byte[] decodedAesKey = Base64.getDecoder().decode(queryMessage.getAESkey());
-		this.aesKey = new SecretKeySpec(decodedAesKey, 0, decodedAesKey.length, Encryption.AES);
+		this.encryption = new EncryptionContext(
+				new SecretKeySpec(decodedAesKey, 0, decodedAesKey.length, Encryption.AES),
+				queryMessage.getAESinitVector());
+		this.joinValues = new CiphertextCache(this.encryption);
 		byte[] decodedShaKey = Base64.getDecoder().decode(queryMessage.getSHAkey());
 		this.sha3Key = new SecretKeySpec(decodedShaKey, 0, decodedShaKey.length, Encryption.HMAC_SHA3_256);
-		this.initVector = queryMessage.getAESinitVector();
+		this.twinHash = TwinHash.create(
+				this.twinCondition == null ? null : this.twinCondition.getHashFunction(),
+				this.sha3Key);
 		this.semiJoin = queryMessage.getIsSemiJoin();
 		this.numberOfSalts = 0;
 	}
@@ -86,57 +99,35 @@ public class QueryHandler {
 		ResultSet queryResult = ModelUtils.queryDB(this.query, this.connect);
 		long startTime = System.nanoTime();
 
-		String occurencesQuery;
-		if (this.queryFilter.isBlank()) {
-			occurencesQuery = "SELECT " + this.joinAttribute + ", COUNT (*)" +
-					" FROM " + StorageServer.getTableName() + " GROUP BY " + this.joinAttribute;
-		} else {
-			occurencesQuery = "SELECT " + this.joinAttribute + ", COUNT (*)" +
-					" FROM " + StorageServer.getTableName() + " " + this.queryFilter + " GROUP BY " + this.joinAttribute;
-		}
-
-		ResultSet occurrencesResult = ModelUtils.queryDB(occurencesQuery, this.connect);
-
-		HashMap<String,Integer> joinValuesOccurrences = new HashMap<>();
-		try {
-			while (occurrencesResult.next()) {
-				joinValuesOccurrences.put(occurrencesResult.getString(1), occurrencesResult.getInt(2));
-			}
-		} catch (SQLException e) {
-			Logger.err(this, e);
-		}
-
 		Set<Pair<String, String>> markers = this.generateMarkers(
 				this.numberOfMarkers,
 				this.minNumberOfMarkers,
 				this.maxNumberOfMarkers
 		);
 
-		List<Pair<String, String>> partialResult = new ArrayList<>();
-		try {
-			if (this.semiJoin) {
-				while (queryResult.next()) {
-					partialResult.add(Pair.of(StorageServer.addServerName(
-									queryResult.getString("ID")),
-							queryResult.getString(this.joinAttribute)
-							+ "|" + joinValuesOccurrences.get(queryResult.getString(this.joinAttribute))));
-				}
-			} else {
-				while (queryResult.next()) {
-					partialResult.add(Pair.of(StorageServer.addServerName(
-									queryResult.getString("ID")),
-							queryResult.getString(this.joinAttribute) + "|" + queryResult.getString(3)
-					         + "|" + joinValuesOccurrences.get(queryResult.getString(this.joinAttribute))));
-				}
+		// Without a filter the occurrences of the whole table are those maintained by the storage server
+		OccurrenceIndex occurrenceIndex = OccurrenceIndex.of(StorageServer.getTableName(), this.joinAttribute);
+		Map<String, Integer> joinValuesOccurrences = this.queryFilter == null || this.queryFilter.isBlank() ?
+				occurrenceIndex.getOccurrences(this.connect) :
+				null;
+		List<Pair<String, String>> partialResult = null;
+		if (joinValuesOccurrences != null) {
+			partialResult = this.scanWithOccurrences(queryResult, joinValuesOccurrences);
+			if (partialResult == null) {
+				Logger.warn(this, "Stale occurrence index, counting the occurrences during the scan");
+				occurrenceIndex.invalidate();
+				queryResult = ModelUtils.queryDB(this.query, this.connect);
 			}
-			queryResult.close();
-		} catch (Exception e) {
-			Logger.err(this, e);
 		}
+		if (partialResult == null) {
+			joinValuesOccurrences = new HashMap<>();
+			partialResult = this.scanCountingOccurrences(queryResult, joinValuesOccurrences);
+		}
+		int maxOccurrences = joinValuesOccurrences.values().stream().mapToInt(Integer::intValue).max().orElse(0);
 
 		int nmax = 0;
 		if (this.numOfWorkers >= 2) { // For distributed join with occurrences only
-			nmax = Collections.max(joinValuesOccurrences.values());
+			nmax = maxOccurrences;
 			Network.post(StorageServer.getClient(),
 					Network.createURL(
 							StorageServer.getClientAddr(),
@@ -170,11 +161,7 @@ public class QueryHandler {
 			}
 		}
 
-		partialResult = partialResult.stream().map(p -> Pair.of(
-						Encryption.encrypt(Encryption.getPrefix(p.getRight(), "|"), this.aesKey, this.initVector),
-						Encryption.encrypt(p.getLeft() + "|" + Encryption.removeSalt(p.getRight()),
-								this.aesKey, this.initVector)))
-				.toList();
+		partialResult = this.encryptPartialResult(partialResult, p -> Encryption.getPrefix(p.getRight(), "|"));
 
 		// <Storage server name>:<number of values with occurrences greater than two>:<max occurrence>:<table size>:<elapsed_time_ms>
 		long endTime = System.nanoTime();
@@ -182,8 +169,8 @@ public class QueryHandler {
 		try {
 			FileWriter myWriter = new FileWriter(OCCURRENCES_TEMP_FILE_PATH, true);
 			myWriter.write(StorageServer.getName() + ":"
-					+ joinValuesOccurrences.values().stream().filter( o -> o > 1).count() + ":"
-					+ Collections.max(joinValuesOccurrences.values()) + ":"
+					+ joinValuesOccurrences.values().stream().filter(o -> o > 1).count() + ":"
+					+ maxOccurrences + ":"
 					+ Statistics.getTableSize(StorageServer.getDbUrl(), connect) + ":"
 					+ elapsed + "\n");
 			myWriter.close();
@@ -198,32 +185,116 @@ public class QueryHandler {
 		try {
 			ModelUtils.closeDBConnection(this.connect);
 			this.connect = null;
-			String message;
+			boolean binary = StorageServer.getWireFormat() == WireFormat.BINARY;
+			String url;
+			byte[] body;
 			if (this.numOfWorkers >= 2) {
-				message = CustomJsonParser.serializeObject(new DistributedJoinQueryMessage(
-						new JoinQueryMessage(partialResult, QueryHandler.JOIN_ATTR_INDEX, StorageServer.getName()),
-						this.workers));
-				Network.post(StorageServer.getClient(),
-						Network.createURL(
-								StorageServer.getCspAddr(),
-								StorageServer.getCspPort(),
-								StorageServer.getDistributedJoinCspPath()), message
-				);
+				DistributedJoinQueryMessage message = new DistributedJoinQueryMessage(
+						new JoinQueryMessage(this.queryId, partialResult, QueryHandler.JOIN_ATTR_INDEX,
+								StorageServer.getName()),
+						this.workers);
+				url = Network.createURL(
+						StorageServer.getCspAddr(),
+						StorageServer.getCspPort(),
+						StorageServer.getDistributedJoinCspPath());
+				body = binary ? BinaryCodec.encode(message) :
+						CustomJsonParser.serializeObject(message).getBytes(StandardCharsets.UTF_8);
 			} else {
-				message = CustomJsonParser.serializeObject(new JoinQueryMessage(partialResult,
-						QueryHandler.JOIN_ATTR_INDEX, StorageServer.getName()));
-				Network.post(StorageServer.getClient(),
-						Network.createURL(
-								StorageServer.getCspAddr(),
-								StorageServer.getCspPort(),
-								StorageServer.getJoinCspPath()), message
-				);
+				JoinQueryMessage message = new JoinQueryMessage(this.queryId, partialResult,
+						QueryHandler.JOIN_ATTR_INDEX, StorageServer.getName());
+				url = Network.createURL(
+						StorageServer.getCspAddr(),
+						StorageServer.getCspPort(),
+						StorageServer.getJoinCspPath());
+				body = binary ? BinaryCodec.encode(message) :
+						CustomJsonParser.serializeObject(message).getBytes(StandardCharsets.UTF_8);
 			}
+			this.postToCsp(url, body, binary ? BinaryCodec.MEDIA_TYPE : MediaType.APPLICATION_JSON);
 		} catch (JsonProcessingException e) {
 			Logger.err(this, e);
 		}
 	}
 
+	// The CSP answers 503 while it is running its maximum number of concurrent queries
+	private void postToCsp(String url, byte[] body, String mediaType) {
+		int busy = Response.Status.SERVICE_UNAVAILABLE.getStatusCode();
+		int status = busy;
+		for (int attempt = 1; attempt <= QueryHandler.MAX_SEND_ATTEMPTS && status == busy; attempt++) {
+			if (attempt > 1) {
+				Logger.warn(this, "CSP busy, retrying query " + this.queryId + " (attempt " + attempt + ")");
+				try {
+					Thread.sleep(QueryHandler.RETRY_DELAY_MS * (attempt - 1));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			Response response = Network.post(StorageServer.getClient(), url, body, mediaType);
+			status = response.getStatus();
+			response.close();
+		}
+		if (status == busy) {
+			Logger.err(this, "Query " + this.queryId + " not admitted by the CSP");
+		}
+	}
+
+	// Single scan attaching the known occurrences to the tuples: null if a join value is not in 'joinValuesOccurrences'
+	private List<Pair<String, String>> scanWithOccurrences(ResultSet queryResult, Map<String, Integer> joinValuesOccurrences) {
+		List<Pair<String, String>> partialResult = new ArrayList<>();
+		try {
+			while (queryResult.next()) {
+				String joinValue = queryResult.getString(this.joinAttribute);
+				Integer occurrences = joinValuesOccurrences.get(joinValue);
+				if (occurrences == null) {
+					queryResult.close();
+					return null;
+				}
+				partialResult.add(Pair.of(StorageServer.addServerName(queryResult.getString("ID")), this.semiJoin ?
+						joinValue + "|" + occurrences :
+						joinValue + "|" + queryResult.getString(3) + "|" + occurrences));
+			}
+			queryResult.close();
+		} catch (Exception e) {
+			Logger.err(this, e);
+		}
+		return partialResult;
+	}
+
+	// Single scan: the tuples are buffered column by column while the occurrences of their join values are counted,
+	// then the counts are attached to the buffered tuples
+	private List<Pair<String, String>> scanCountingOccurrences(ResultSet queryResult,
+			Map<String, Integer> joinValuesOccurrences) {
+		List<String> tids = new ArrayList<>();
+		List<String> joinValues = new ArrayList<>();
+		List<String> otherValues = new ArrayList<>();
+		Map<String, int[]> counters = new HashMap<>();
+		try {
+			while (queryResult.next()) {
+				String joinValue = queryResult.getString(this.joinAttribute);
+				tids.add(queryResult.getString("ID"));
+				joinValues.add(joinValue);
+				if (!this.semiJoin) {
+					otherValues.add(queryResult.getString(3));
+				}
+				counters.computeIfAbsent(joinValue, k -> new int[1])[0]++;
+			}
+			queryResult.close();
+		} catch (Exception e) {
+			Logger.err(this, e);
+		}
+
+		List<Pair<String, String>> partialResult = new ArrayList<>(tids.size());
+		for (int i = 0; i < tids.size(); i++) {
+			String joinValue = joinValues.get(i);
+			int occurrences = counters.get(joinValue)[0];
+			partialResult.add(Pair.of(StorageServer.addServerName(tids.get(i)), this.semiJoin ?
+					joinValue + "|" + occurrences :
+					joinValue + "|" + otherValues.get(i) + "|" + occurrences));
+		}
+		counters.forEach((joinValue, occurrences) -> joinValuesOccurrences.put(joinValue, occurrences[0]));
+		return partialResult;
+	}
+
 	public void setupRegularJoin() {
 		ResultSet queryResult = ModelUtils.queryDB(this.query, this.connect);
 		long startTime = System.nanoTime();
@@ -233,23 +304,18 @@ public class QueryHandler {
 				this.minNumberOfMarkers,
 				this.maxNumberOfMarkers
 		);
-		Set<Pair<String, String>> twins = this.generateTwins(
-				this.twinCondition
-		);
+		// The twin condition is evaluated on the same scan producing the partial result
+		Predicate<String> twinCondition = this.createTwinPredicate(this.twinCondition);
+		Map<Integer, String> twinned = new HashMap<>();
 
 		List<Pair<String, String>> partialResult = new ArrayList<>();
 		try {
-			if (this.semiJoin) {
-				while (queryResult.next()) {
-					partialResult.add(Pair.of(StorageServer.addServerName(
-									queryResult.getString("ID")),
-							queryResult.getString(this.joinAttribute)));
-				}
-			} else {
-				while (queryResult.next()) {
-					partialResult.add(Pair.of(StorageServer.addServerName(
-									queryResult.getString("ID")),
-							queryResult.getString(this.joinAttribute) + "|" + queryResult.getString(3)));
+			while (queryResult.next()) {
+				String joinValue = queryResult.getString(this.joinAttribute);
+				String value = this.semiJoin ? joinValue : joinValue + "|" + queryResult.getString(3);
+				partialResult.add(Pair.of(StorageServer.addServerName(queryResult.getString("ID")), value));
+				if (twinCondition.test(joinValue)) {
+					twinned.put(queryResult.getInt("ID"), value);
 				}
 			}
 			queryResult.close();
@@ -257,6 +323,8 @@ public class QueryHandler {
 			Logger.err(this, e);
 		}
 
+		Set<Pair<String, String>> twins = this.generateTwins(twinned);
+
 		if (markers != null) {
 			partialResult.addAll(markers);
 		}
@@ -267,17 +335,9 @@ public class QueryHandler {
 		Logger.info(this, partialResult.toString(), LogLevel.COMPLETE);
 
 		if (this.semiJoin) {
-			partialResult = partialResult.stream().map(p -> Pair.of(
-							Encryption.encrypt(p.getRight(), this.aesKey, this.initVector),
-							Encryption.encrypt(p.getLeft() + "|" + Encryption.removeSalt(p.getRight()),
-									this.aesKey, this.initVector)))
-							.toList();
+			partialResult = this.encryptPartialResult(partialResult, Pair::getRight);
 		} else {
-			partialResult = partialResult.stream().map(p -> Pair.of(
-							Encryption.encrypt(Encryption.getPrefix(p.getRight(), "|"), this.aesKey, this.initVector),
-							Encryption.encrypt(p.getLeft() + "|" + Encryption.removeSalt(p.getRight()),
-									this.aesKey, this.initVector)))
-							.toList();
+			partialResult = this.encryptPartialResult(partialResult, p -> Encryption.getPrefix(p.getRight(), "|"));
 		}
 
 		// <Storage server name>:<elapsed_time_ms>
@@ -294,6 +354,26 @@ public class QueryHandler {
 		this.sendPartialResult(partialResult);
 	}
 
+	// Encrypt the join attribute values and the payloads of 'partialResult' as two columns
+	private List<Pair<String, String>> encryptPartialResult(List<Pair<String, String>> partialResult,
+			Function<Pair<String, String>, String> joinValue) {
+		int size = partialResult.size();
+		String[] joinValues = new String[size];
+		String[] payloads = new String[size];
+		for (int i = 0; i < size; i++) {
+			Pair<String, String> p = partialResult.get(i);
+			joinValues[i] = joinValue.apply(p);
+			payloads[i] = p.getLeft() + "|" + Encryption.removeSalt(p.getRight());
+		}
+		String[] encryptedJoinValues = this.joinValues.encryptAll(joinValues);
+		String[] encryptedPayloads = this.encryption.encryptAll(payloads);
+		List<Pair<String, String>> encryptedResult = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			encryptedResult.add(Pair.of(encryptedJoinValues[i], encryptedPayloads[i]));
+		}
+		return encryptedResult;
+	}
+
 	private Set<Pair<String, String>> generateMarkers(int n, int nMin, int nMax) {
 		if (nMin < 0 || nMax < nMin || n < nMin) {
 			Logger.err(this, "Parameters' values are incorrect!");
@@ -323,7 +403,7 @@ public class QueryHandler {
 		do {
 			String m = this.getNextMarker();
 			String w = ComputationalServer.assignTupleToWorker(Objects.requireNonNull(
-					Encryption.encrypt(m, this.aesKey, this.initVector)), l);
+					this.joinValues.encrypt(m)), l);
 			if ((numMarkers.get(w) < nMin) || ((numMarkers.get(w) < nMax && spare > 0))) {
 				numMarkers.put(w, numMarkers.get(w) + 1);
 				if (numMarkers.get(w) > nMin) {
@@ -343,144 +423,42 @@ public class QueryHandler {
 		return "marker_" + this.markerCounter++;
 	}
 
-	private Set<Pair<String, String>> generateTwins(TwinCondition twinCondition) {
-		// 1. Get twinCondition.values
-		// 2. If values null o empty ->
-		// 2.1 Get twinCondition.pTwin
-		// 2.2 Generate condition as: h(t[I]) % Math.floor(1/pTwin) == 0
-		//      h hash function, t[I] stands for a tuple in the relation 'tableName' projected on the JOIN
-		//      attribute I.
-		// 3. If values defined ->
-		// 3.1 Select from the relation 'tableName' where t[I] == at least one value in values
-		//      t[I] stands for a tuple in the relation 'tableName' projected on the JOIN attribute I.
+	// Twin condition on the join attribute value t[I] of a tuple:
+	// - if twinCondition.values is null or empty: h(t[I]) % Math.floor(1/pTwin) == 0, h keyed hash function
+	// - otherwise: t[I] is one of twinCondition.values
+	private Predicate<String> createTwinPredicate(TwinCondition twinCondition) {
+		List<String> values = twinCondition.getValues();
+		if (values == null || values.isEmpty()) {
+			int invPTwin = (int) Math.floor(1 / twinCondition.getPTwin());
+			Logger.info(QueryHandler.class, String.valueOf(invPTwin), LogLevel.REQUIRED);
+			return t -> this.twinHash.isTwin(t, invPTwin);
+		}
+		Set<String> twinValues = new HashSet<>(values);
+		return twinValues::contains;
+	}
+
+	// T: the tuples satisfying the twin condition, by tuple id
+	private Set<Pair<String, String>> generateTwins(Map<Integer, String> T) {
 		if (this.workers == null || this.workers.isEmpty()) {
 			Logger.err(this, "Workers' list is empty!");
 			return null;
 		}
+		if (this.minSaltLength <= 0) {
+			Logger.err(this, "Salt length must be > 0!");
+			return null;
+		}
 		Set<Pair<String, String>> T_bar = new HashSet<>();
-
-		try {
-			ResultSet result = ModelUtils.queryDB(this.query, this.connect);
-			List<String> values = twinCondition.getValues();
-			Map<Integer, String> T = new HashMap<>();
-			if (values == null || values.isEmpty()) {
-				float pTwin = twinCondition.getPTwin();
-				BigInteger invPTwin = new BigInteger(String.valueOf((int) Math.floor(1 / pTwin)));
-				Logger.info(QueryHandler.class, invPTwin.toString(), LogLevel.REQUIRED);
-				if (this.semiJoin) {
-					while (result.next()) {
-						String t = result.getString(this.joinAttribute);
-						if ((Objects.requireNonNull(Encryption.hash(t, this.sha3Key)).mod(invPTwin).equals(BigInteger.ZERO))) {
-							T.put(result.getInt("ID"), t);
-						}
-					}
-				} else {
-					while (result.next()) {
-						String t = result.getString(this.joinAttribute);
-						if ((Objects.requireNonNull(Encryption.hash(t, this.sha3Key)).mod(invPTwin).equals(BigInteger.ZERO))) {
-							T.put(result.getInt("ID"), t + "|" + result.getString(3));
-						}
-					}
-				}
-			} else {
-				if (this.semiJoin) {
-					while (result.next()) {
-						String t = result.getString(this.joinAttribute);
-						if (values.contains(t)) {
-							T.put(result.getInt("ID"), t);
-						}
-					}
-				} else {
-					while (result.next()) {
-						String t = result.getString(this.joinAttribute);
-						if (values.contains(t)) {
-							T.put(result.getInt("ID"), t + "|" + result.getString(3));
-						}
-					}
-				}
+		TwinPlacement placement = new TwinPlacement(this.joinValues, this.numOfWorkers, this.replicationFactor,
+				this.minSaltLength);
+
+		for (Map.Entry<Integer, String> t : T.entrySet()) {
+			// Semi-join: <joinAttr>, otherwise <joinAttr>|<otherAttr>
+			String joinValue = Encryption.getPrefix(t.getValue(), "|");
+			String otherValue = this.semiJoin ? "" : t.getValue().substring(joinValue.length());
+			String tid = StorageServer.addServerName(String.valueOf(t.getKey()));
+			for (String twin : placement.getTwins(joinValue)) {
+				T_bar.add(Pair.of(tid, twin + otherValue));
 			}
-			Set<String> assigned = new HashSet<>();
-			if (this.semiJoin) {
-				for (Map.Entry<Integer, String> t : T.entrySet()) {
-					int twinExactCounter = this.twinCounter.get(t.getKey()) == null ? 0 : this.twinCounter.get(t.getKey());
-					for (int i = 1; i < this.replicationFactor; i++) {
-						// Twin separation property
-						String deterministicSalt = this.generateSalt(this.minSaltLength, twinExactCounter);
-						String candidateTwinJoinAttr = t.getValue() + deterministicSalt;
-						int counterSalt = 0;
-						String w = ComputationalServer.assignTupleToWorker(
-								Objects.requireNonNull(
-										Encryption.encrypt(candidateTwinJoinAttr, this.aesKey, this.initVector)
-								),
-								this.numOfWorkers
-						);
-						Logger.info(this, "Original twinned tuple: " + candidateTwinJoinAttr + " assigned to worker: " +
-								w, LogLevel.COMPLETE);
-						assigned.add(w);
-
-						while(assigned.size() < this.numOfWorkers && assigned.contains(w)) {
-							assigned.add(w);
-							candidateTwinJoinAttr = t.getValue() + deterministicSalt + "_" + counterSalt;
-							counterSalt = (counterSalt + 1) % Integer.MAX_VALUE;
-							w = ComputationalServer.assignTupleToWorker(
-									Objects.requireNonNull(
-											Encryption.encrypt(candidateTwinJoinAttr, this.aesKey, this.initVector)
-									),
-									this.numOfWorkers
-							);
-						}
-						Logger.info(this, "Twin tuple: " + candidateTwinJoinAttr + " assigned to worker: " +
-								w, LogLevel.COMPLETE);
-						assigned.clear();
-						T_bar.add(Pair.of(StorageServer.addServerName(String.valueOf(t.getKey())), candidateTwinJoinAttr));
-						twinExactCounter++;
-					}
-					this.twinCounter.put(t.getKey(), twinExactCounter);
-				}
-			} else {
-				for (Map.Entry<Integer, String> t : T.entrySet()) {
-					int twinExactCounter = this.twinCounter.get(t.getKey()) == null ? 0 : this.twinCounter.get(t.getKey());
-					String[] splittedValue = t.getValue().split("\\|");
-					assert splittedValue.length >= 2;
-					for (int i = 1; i < this.replicationFactor; i++) {
-						// Twin separation property
-						String deterministicSalt = this.generateSalt(this.minSaltLength, twinExactCounter);
-						String candidateTwinJoinAttr = splittedValue[0] + deterministicSalt;
-						int counterSalt = 0;
-						String w = ComputationalServer.assignTupleToWorker(
-								Objects.requireNonNull(
-										Encryption.encrypt(candidateTwinJoinAttr, this.aesKey, this.initVector)
-								),
-								this.numOfWorkers
-						);
-						Logger.info(this, "Original twinned tuple: " + candidateTwinJoinAttr + " assigned to worker: " +
-								w, LogLevel.COMPLETE);
-						assigned.add(w);
-
-						while(assigned.size() < this.numOfWorkers && assigned.contains(w)) {
-							assigned.add(w);
-							candidateTwinJoinAttr = splittedValue[0] + deterministicSalt + "_" + counterSalt;
-							counterSalt = (counterSalt + 1) % Integer.MAX_VALUE;
-							w = ComputationalServer.assignTupleToWorker(
-									Objects.requireNonNull(
-											Encryption.encrypt(candidateTwinJoinAttr, this.aesKey, this.initVector)
-									),
-									this.numOfWorkers
-							);
-						}
-						Logger.info(this, "Twin tuple: " + candidateTwinJoinAttr + " assigned to worker: " +
-								w, LogLevel.COMPLETE);
-						assigned.clear();
-						T_bar.add(Pair.of(StorageServer.addServerName(String.valueOf(t.getKey())),
-								candidateTwinJoinAttr + "|" + splittedValue[1]));
-						twinExactCounter++;
-					}
-					this.twinCounter.put(t.getKey(), twinExactCounter);
-				}
-			}
-			result.close();
-		} catch (SQLException e) {
-			Logger.err(this, e);
 		}
 
 		Logger.info(this, "Generated twins (" + T_bar.size() + "): " + T_bar, LogLevel.REQUIRED);
@@ -524,23 +502,6 @@ public class QueryHandler {
 		return CustomJsonParser.serializeObject(resultTuples);
 	}
 
-	private String generateSalt(int minLength, int twinExactCounter) {
-		if (minLength <= 0) {
-			Logger.err(this, "Salt length must be > 0!");
-			return null;
-		}
-
-		String salt = "" + twinExactCounter;
-		if (salt.length() < minLength - 1) {
-			StringBuilder saltBuilder = new StringBuilder(salt);
-			for (int i = salt.length(); i < minLength - 1; i++) {
-				saltBuilder.insert(0, "0");
-			}
-			salt = saltBuilder.toString();
-		}
-		return "-" + salt;
-	}
-
 	public void setNumberOfSalts(int numberOfSalts) {
 		synchronized (QueryHandler.LOCK) {
 			this.numberOfSalts = numberOfSalts;
@@ -568,7 +529,7 @@ public class QueryHandler {
 							saltedJoinAttr = null;
 							w = ComputationalServer.assignTupleToWorker(
 									Objects.requireNonNull(
-											Encryption.encrypt(joinAttrValue, this.aesKey, this.initVector)
+											this.joinValues.encrypt(joinAttrValue)
 									),
 									numOfWorkers
 							);
@@ -577,7 +538,7 @@ public class QueryHandler {
 								saltedJoinAttr = joinAttrValue + "%%" + (saltCounter++);
 								w = ComputationalServer.assignTupleToWorker(
 										Objects.requireNonNull(
-												Encryption.encrypt(saltedJoinAttr, this.aesKey, this.initVector)
+												this.joinValues.encrypt(saltedJoinAttr)
 										),
 										numOfWorkers
 								);
@@ -619,7 +580,7 @@ public class QueryHandler {
 						if (i == 0) { // First bucket, no need to add a salt
 							w = ComputationalServer.assignTupleToWorker(
 									Objects.requireNonNull(
-											Encryption.encrypt(joinAttrValue, this.aesKey, this.initVector)
+											this.joinValues.encrypt(joinAttrValue)
 									),
 									numOfWorkers
 							);
@@ -632,7 +593,7 @@ public class QueryHandler {
 								saltedJoinAttr = joinAttrValue + "%%" + (saltCounter++);
 								w = ComputationalServer.assignTupleToWorker(
 										Objects.requireNonNull(
-												Encryption.encrypt(saltedJoinAttr, this.aesKey, this.initVector)
+												this.joinValues.encrypt(saltedJoinAttr)
 										),
 										numOfWorkers
 								);
@@ -661,7 +622,7 @@ public class QueryHandler {
 								saltedJoinAttr = joinAttrValue + "%%" + (saltCounter++);
 								w = ComputationalServer.assignTupleToWorker(
 										Objects.requireNonNull(
-												Encryption.encrypt(saltedJoinAttr, this.aesKey, this.initVector)
+												this.joinValues.encrypt(saltedJoinAttr)
 										),
 										numOfWorkers
 								);
@@ -693,7 +654,7 @@ public class QueryHandler {
 					}
 					Logger.info(this, "I: " + saltedBucket.getKey() + " | Assigned to worker: " +
 							ComputationalServer.assignTupleToWorker(Objects.requireNonNull(
-									Encryption.encrypt(saltedBucket.getKey(), this.aesKey, this.initVector)
+									this.joinValues.encrypt(saltedBucket.getKey())
 							),
 							numOfWorkers), LogLevel.COMPLETE
 					);
@@ -0,0 +1,82 @@
+package model;
+
+import server.ComputationalServer;
+import utility.CiphertextCache;
+import utility.LogLevel;
+import utility.Logger;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The TwinPlacement class.
+ * Salted join attribute values of the twins of a query, computed once per join value.
+ * The twin of salt index i of a value v is v-<salt i>, possibly followed by _<k> until it is assigned to a worker
+ * not used by v nor by the twins of lower salt index (twin separation property), while such a worker exists.
+ * The placement only depends on the value, so the twins of the tuples sharing a join value are not routed again,
+ * and both storage servers compute the same twins for the same value.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class TwinPlacement {
+	private final CiphertextCache cipherTexts;
+	private final int numOfWorkers;
+	private final int numberOfTwins;
+	private final int minSaltLength;
+	// Join value -> twin join attribute value, by salt index
+	private final Map<String, String[]> placements;
+
+	public TwinPlacement(CiphertextCache cipherTexts, int numOfWorkers, int replicationFactor, int minSaltLength) {
+		assert numOfWorkers > 0;
+		this.cipherTexts = cipherTexts;
+		this.numOfWorkers = numOfWorkers;
+		this.numberOfTwins = Math.max(0, replicationFactor - 1);
+		this.minSaltLength = minSaltLength;
+		this.placements = new HashMap<>();
+	}
+
+	public String[] getTwins(String joinValue) {
+		return this.placements.computeIfAbsent(joinValue, this::place);
+	}
+
+	public int getNumberOfTwins() {
+		return this.numberOfTwins;
+	}
+
+	private String[] place(String joinValue) {
+		String[] twins = new String[this.numberOfTwins];
+		BitSet used = new BitSet(this.numOfWorkers);
+		used.set(this.route(joinValue));
+		for (int i = 0; i < this.numberOfTwins; i++) {
+			String salted = joinValue + TwinPlacement.generateSalt(this.minSaltLength, i);
+			String twin = salted;
+			int worker = this.route(twin);
+			for (int k = 0; used.get(worker) && used.cardinality() < this.numOfWorkers; k++) {
+				twin = salted + "_" + k;
+				worker = this.route(twin);
+			}
+			used.set(worker);
+			twins[i] = twin;
+			Logger.info(this, "Twin: " + twin + " assigned to worker: worker_" + worker, LogLevel.COMPLETE);
+		}
+		return twins;
+	}
+
+	private int route(String joinAttr) {
+		return ComputationalServer.assignTupleToWorkerIndex(
+				Objects.requireNonNull(this.cipherTexts.encrypt(joinAttr)),
+				this.numOfWorkers
+		);
+	}
+
+	private static String generateSalt(int minLength, int saltIndex) {
+		String salt = String.valueOf(saltIndex);
+		if (salt.length() < minLength - 1) {
+			salt = "0".repeat(minLength - 1 - salt.length()) + salt;
+		}
+		return "-" + salt;
+	}
+}
@@ -1,28 +1,36 @@
 package server;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import communication.DistributedJoinQueryMessage;
-import communication.JoinQueryMessage;
+import communication.QueryId;
+import communication.RelationConsumer;
 import communication.ResultMessage;
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
-import org.apache.commons.lang3.tuple.Pair;
+import jakarta.ws.rs.core.Response;
 import org.apache.commons.lang3.tuple.Triple;
 import org.glassfish.grizzly.http.server.HttpServer;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import server.join.ConcatenatedList;
+import server.join.JoinSink;
+import server.join.ParallelHashJoin;
+import server.join.PipelinedHashJoin;
+import server.join.Relation;
+import server.join.RelationPartitioner;
 import simulation.SimulationConfigFile;
+import utility.BinaryCodec;
 import utility.CustomJsonParser;
 import utility.LogLevel;
 import utility.Logger;
 import utility.Network;
+import utility.WireFormat;
 
 import java.io.IOException;
 import java.net.URI;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * The ComputationalServer class.
@@ -50,11 +58,22 @@ public class ComputationalServer {
 	private static int clientPort;
 	private static final String JOIN_RESULT_PATH = "send-result";
 
-	private static final ConcurrentHashMap<String, JoinQueryMessage> relationBuffer = new ConcurrentHashMap<>();
-	private static final ConcurrentHashMap<String, DistributedJoinQueryMessage> distributedMessageBuffer = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, QuerySession> sessions = new ConcurrentHashMap<>();
+	private static Semaphore admission;
+	private static final int DEFAULT_MAX_CONCURRENT_QUERIES = 4;
 	private static final int MAX_SIZE = 1000;
 	private static SimulationConfigFile simulationConfigFile;
 	private static final Random RNG = new Random();
+	private static boolean streamResults;
+	private static WireFormat wireFormat;
+	private static ParallelHashJoin parallelJoin;
+	private static WorkerRuntime workerRuntime;
+	private static long sessionTimeout;
+	private static final ScheduledExecutorService sessionReaper = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "session-reaper");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	private ComputationalServer(String serverName, String ipAddr, int port) {
 		ComputationalServer.setName(serverName);
@@ -68,6 +87,29 @@ public class ComputationalServer {
 		assert clientParams != null;
 		ComputationalServer.clientAddr = clientParams.get("ipAddr");
 		ComputationalServer.clientPort = Integer.parseInt(clientParams.get("port"));
+
+		ComputationalServer.wireFormat = ComputationalServer.simulationConfigFile.getWireFormat() == null ?
+				WireFormat.JSON : ComputationalServer.simulationConfigFile.getWireFormat();
+
+		Map<String, String> cspParams = ComputationalServer.simulationConfigFile.getComputationalServer();
+		assert cspParams != null;
+		ComputationalServer.streamResults = Boolean.parseBoolean(cspParams.get("streamResults"));
+		int joinParallelism = Integer.parseInt(cspParams.getOrDefault("joinParallelism", "1"));
+		if (joinParallelism > 1) {
+			ComputationalServer.parallelJoin = new ParallelHashJoin(joinParallelism);
+		}
+		int workerPoolSize = Integer.parseInt(cspParams.getOrDefault("workerPoolSize",
+				String.valueOf(Runtime.getRuntime().availableProcessors())));
+		ComputationalServer.workerRuntime = new WorkerRuntime(workerPoolSize);
+		// Queries joined at the same time, 4 unless configured otherwise (as shipped in simulation.config.json)
+		int maxConcurrentQueries = Integer.parseInt(cspParams.getOrDefault("maxConcurrentQueries",
+				String.valueOf(ComputationalServer.DEFAULT_MAX_CONCURRENT_QUERIES)));
+		ComputationalServer.admission = new Semaphore(Math.max(1, maxConcurrentQueries));
+		long sessionTimeoutSeconds = Math.max(1, Long.parseLong(cspParams.getOrDefault("sessionTimeout", "300")));
+		ComputationalServer.sessionTimeout = TimeUnit.SECONDS.toNanos(sessionTimeoutSeconds);
+		long reaperPeriod = Math.max(1, sessionTimeoutSeconds / 2);
+		ComputationalServer.sessionReaper.scheduleAtFixedRate(ComputationalServer::expireSessions,
+				reaperPeriod, reaperPeriod, TimeUnit.SECONDS);
 	}
 
 	// Handle REST requests
@@ -116,282 +158,381 @@ public class ComputationalServer {
 		System.exit(0);
 	}
 
-	public static void join() {
-		assert ComputationalServer.relationBuffer.keySet().size() == 2;
-		ArrayList<JoinQueryMessage> messages = new ArrayList<>(ComputationalServer.relationBuffer.values());
-		assert messages.size() == 2;
-		List<Pair<String, String>> firstRelation = messages.get(0).getRelation();
-		List<Pair<String, String>> secondRelation = messages.get(1).getRelation();
-		int firsJoinIndex = messages.get(0).getJoinAttribute();
-		int secondJoinIndex = messages.get(1).getJoinAttribute();
+	// Consumer for a relation about to be received: it joins the session of its query once the query id is read
+	public static RelationConsumer openRelation(boolean distributed) {
+		return new IncomingRelation(distributed);
+	}
+
+	// To be called once 'relation' has been received entirely: the last relation of a query completes its join
+	public static void closeRelation(RelationConsumer relation, List<String> workers) {
+		IncomingRelation incomingRelation = (IncomingRelation) relation;
+		QuerySession session = incomingRelation.session;
+		session.relationReceived();
+		try {
+			session.checkCancelled();
+			if (incomingRelation.distributed) {
+				if (session.addDistributedRelation(incomingRelation.getSender(), (Relation) incomingRelation.target,
+						workers) == 2) {
+					ComputationalServer.distributedJoin(session);
+				}
+			} else if (ComputationalServer.parallelJoin != null) {
+				Relation bufferedRelation = (Relation) incomingRelation.target;
+				if (session.addRelation(bufferedRelation.getSender(), bufferedRelation) == 2) {
+					ComputationalServer.join(session);
+				}
+			} else {
+				ComputationalServer.finishPipelinedJoin(session, incomingRelation.target);
+			}
+		} catch (CancellationException e) {
+			if (session.isCancelled()) {
+				Logger.info(ComputationalServer.class, e.getMessage(), LogLevel.REQUIRED);
+			} else {
+				Logger.err(ComputationalServer.class, "Query " + session.getQueryId() + " failed: " + e.getMessage());
+			}
+			ComputationalServer.closeSession(session);
+		}
+	}
+
+	// Drop the query of a relation that could not be received
+	public static void abortRelation(RelationConsumer relation) {
+		QuerySession session = ((IncomingRelation) relation).session;
+		if (session != null) {
+			Logger.err(ComputationalServer.class, "Query " + session.getQueryId() + " aborted");
+			ComputationalServer.closeSession(session);
+		}
+	}
 
-		List<Triple<String, String, String>> joinResult = ComputationalServer.doJoin(
-				firstRelation, secondRelation,
-				firsJoinIndex, secondJoinIndex
-		);
+	// Stop a query whose result has been rejected by the client: its session is closed by the thread running it,
+	// so that the relations still arriving do not open the query again
+	public static boolean cancelQuery(String queryId) {
+		QuerySession session = ComputationalServer.sessions.get(QueryId.normalize(queryId));
+		if (session == null) {
+			return false;
+		}
+		Logger.info(ComputationalServer.class, "Query " + session.getQueryId() + " cancelled by the client",
+				LogLevel.REQUIRED);
+		session.cancel();
+		return true;
+	}
 
-		ComputationalServer.sendJoinResult(joinResult);
-		relationBuffer.clear();
+	// Queries beyond 'maxConcurrentQueries' are rejected rather than queued: a waiting request would hold
+	// a server thread that the other relation of a running query may need
+	private static QuerySession openSession(String queryId) {
+		String id = QueryId.normalize(queryId);
+		QuerySession session = ComputationalServer.sessions.get(id);
+		if (session != null) {
+			return session;
+		}
+		if (!ComputationalServer.admission.tryAcquire()) {
+			throw new RejectedExecutionException("Too many concurrent queries: query " + id + " rejected");
+		}
+		QuerySession newSession = new QuerySession(id);
+		session = ComputationalServer.sessions.putIfAbsent(id, newSession);
+		if (session != null) {
+			// Opened concurrently by the other relation of the query
+			ComputationalServer.admission.release();
+			return session;
+		}
+		Logger.info(ComputationalServer.class, "Query " + id + " started", LogLevel.COMPLETE);
+		return newSession;
 	}
 
-	private static void sendJoinResult(List<Triple<String, String, String>> joinResult) {
-		try {
-			String message;
-			int numberOfFragments = (int) Math.ceil(joinResult.size() / (double) MAX_SIZE);
-			for (int i = 0, j = 0; i < joinResult.size(); i += MAX_SIZE, j++) {
-				int end = Math.min(joinResult.size(), i + MAX_SIZE);
-				message = CustomJsonParser.serializeObject(new ResultMessage(joinResult.subList(i, end), j, numberOfFragments));
-				Network.post(ComputationalServer.client,
-						Network.createURL(
-								ComputationalServer.clientAddr,
-								ComputationalServer.clientPort,
-								ComputationalServer.JOIN_RESULT_PATH), message
-				);
+	// Close the sessions whose other relation is not coming, e.g. because its storage server failed:
+	// they would hold an admission permit forever
+	private static void expireSessions() {
+		for (QuerySession session : ComputationalServer.sessions.values()) {
+			if (session.expire(ComputationalServer.sessionTimeout)) {
+				Logger.err(ComputationalServer.class, "Query " + session.getQueryId() + " expired: no relation received for " +
+						TimeUnit.NANOSECONDS.toSeconds(ComputationalServer.sessionTimeout) + " s");
+				ComputationalServer.closeSession(session);
 			}
-		} catch (JsonProcessingException e) {
-			Logger.err(ComputationalServer.class, e);
 		}
 	}
 
-	private static List<Triple<String, String, String>> doJoin(List<Pair<String, String>> firstRelation,
-	                                                           List<Pair<String, String>> secondRelation,
-	                                                           int firstJoinIndex, int secondJoinIndex) {
-		List<Triple<String, String, String>> result = new ArrayList<>();
-		float tamperingProbability = ComputationalServer.simulationConfigFile.getTamperingProbability();
-		float lazyProbability = ComputationalServer.simulationConfigFile.getLazyProbability();
-		assert tamperingProbability >= 0.0 && tamperingProbability <= 1.0 &&
-				lazyProbability >= 0.0 && lazyProbability <= 1.0;
-
-		if (firstJoinIndex == 0) {
-			Map<String, List<Pair<String, String>>> firstRelationMap = firstRelation.stream()
-					.collect(Collectors.groupingBy(Pair::getLeft));
-			if (secondJoinIndex == 0) {
-				for (Pair<String, String> t : secondRelation) {
-					String joinAttribute = t.getLeft();
-					List<Pair<String, String>> joinCandidates = firstRelationMap.get(joinAttribute);
-					if (joinCandidates != null) {
-						for (Pair<String, String> p : joinCandidates) {
-							if (RNG.nextDouble() >= lazyProbability) {
-								if (RNG.nextDouble() < tamperingProbability) {
-									// Tampering with probability 'tamperingProbability'
-									result.add(ComputationalServer.tamper(joinAttribute, p.getRight(), t.getRight()));
-								} else {
-									result.add(Triple.of(joinAttribute, p.getRight(), t.getRight()));
-								}
-							}
-						}
-					}
+	private static void closeSession(QuerySession session) {
+		if (ComputationalServer.sessions.remove(session.getQueryId(), session)) {
+			session.clear();
+			ComputationalServer.admission.release();
+			Logger.info(ComputationalServer.class, "Query " + session.getQueryId() + " closed", LogLevel.COMPLETE);
+		}
+	}
+
+	// The pipelined join starts with the first relation, the parallel join waits for both to be buffered
+	private static RelationConsumer openSessionRelation(QuerySession session) {
+		if (ComputationalServer.parallelJoin != null) {
+			return new Relation();
+		}
+		synchronized (session) {
+			if (session.getPipelinedJoin() == null) {
+				JoinSink target;
+				if (ComputationalServer.streamResults) {
+					session.setStreamer(ComputationalServer.createResultStreamer(session));
+					target = session.getStreamer();
+				} else {
+					session.setResult(new ArrayList<>());
+					target = session.cancellable(JoinSink.into(session.getResult()));
 				}
+				session.setPipelinedJoin(new PipelinedHashJoin(target,
+						ComputationalServer.simulationConfigFile.getTamperingProbability(),
+						ComputationalServer.simulationConfigFile.getLazyProbability(), RNG));
+			}
+			return session.getPipelinedJoin().open();
+		}
+	}
+
+	private static void finishPipelinedJoin(QuerySession session, RelationConsumer relation) {
+		PipelinedHashJoin join;
+		ResultStreamer streamer;
+		List<Triple<String, String, String>> joinResult;
+		synchronized (session) {
+			join = session.getPipelinedJoin();
+			streamer = session.getStreamer();
+			joinResult = session.getResult();
+		}
+		if (join == null || !join.close(relation)) {
+			return;
+		}
+		try {
+			if (streamer != null) {
+				streamer.finish();
 			} else {
-				for (Pair<String, String> t : secondRelation) {
-					String joinAttribute = t.getRight();
-					List<Pair<String, String>> joinCandidates = firstRelationMap.get(joinAttribute);
-					if (joinCandidates != null) {
-						for (Pair<String, String> p : joinCandidates) {
-							if (RNG.nextDouble() >= lazyProbability) {
-								if (RNG.nextDouble() < tamperingProbability) {
-									// Tampering with probability 'tamperingProbability'
-									result.add(ComputationalServer.tamper(joinAttribute, p.getRight(), t.getLeft()));
-								} else {
-									result.add(Triple.of(joinAttribute, p.getRight(), t.getLeft()));
-								}
-							}
-						}
-					}
-				}
+				ComputationalServer.sendJoinResult(session, joinResult);
 			}
-		} else {
-			Map<String, List<Pair<String, String>>> firstRelationMap = firstRelation.stream()
-					.collect(Collectors.groupingBy(Pair::getRight));
-			if (secondJoinIndex == 0) {
-				for (Pair<String, String> t : secondRelation) {
-					String joinAttribute = t.getLeft();
-					List<Pair<String, String>> joinCandidates = firstRelationMap.get(joinAttribute);
-					if (joinCandidates != null) {
-						for (Pair<String, String> p : joinCandidates) {
-							if (RNG.nextDouble() >= lazyProbability) {
-								if (RNG.nextDouble() < tamperingProbability) {
-									// Tampering with probability 'tamperingProbability'
-									result.add(ComputationalServer.tamper(joinAttribute, p.getLeft(), t.getRight()));
-								} else {
-									result.add(Triple.of(joinAttribute, p.getLeft(), t.getRight()));
-								}
-							}
-						}
-					}
+		} catch (InterruptedException e) {
+			Logger.err(ComputationalServer.class, e);
+		} finally {
+			synchronized (session) {
+				session.setStreamer(null);
+			}
+			ComputationalServer.closeSession(session);
+		}
+	}
+
+	private static void join(QuerySession session) {
+		assert session.getRelationBuffer().keySet().size() == 2;
+		ArrayList<Relation> relations = new ArrayList<>(session.getRelationBuffer().values());
+		assert relations.size() == 2;
+		// Same orientation as the pipelined join: the relation of the lowest sender name comes first
+		relations.sort(Comparator.comparing(Relation::getSender, Comparator.nullsFirst(Comparator.naturalOrder())));
+		Relation firstRelation = relations.get(0);
+		Relation secondRelation = relations.get(1);
+
+		try {
+			if (ComputationalServer.streamResults) {
+				ResultStreamer streamer = ComputationalServer.createResultStreamer(session);
+				session.setStreamer(streamer);
+				try {
+					ComputationalServer.doJoin(firstRelation, secondRelation, streamer);
+				} catch (InterruptedException | ExecutionException | RuntimeException e) {
+					// The result is incomplete: no final fragment must be sent
+					streamer.abort();
+					throw e;
 				}
+				streamer.finish();
+				session.setStreamer(null);
 			} else {
-				for (Pair<String, String> t : secondRelation) {
-					String joinAttribute = t.getRight();
-					List<Pair<String, String>> joinCandidates = firstRelationMap.get(joinAttribute);
-					if (joinCandidates != null) {
-						for (Pair<String, String> p : joinCandidates) {
-							if (RNG.nextDouble() >= lazyProbability) {
-								if (RNG.nextDouble() < tamperingProbability) {
-									// Tampering with probability 'tamperingProbability'
-									result.add(ComputationalServer.tamper(joinAttribute, p.getLeft(), t.getLeft()));
-								} else {
-									result.add(Triple.of(joinAttribute, p.getLeft(), t.getLeft()));
-								}
-							}
-						}
-					}
+				List<Triple<String, String, String>> joinResult = new ArrayList<>();
+				ComputationalServer.doJoin(firstRelation, secondRelation,
+						session.cancellable(JoinSink.into(joinResult)));
+				ComputationalServer.sendJoinResult(session, joinResult);
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			Logger.err(ComputationalServer.class, e);
+		} finally {
+			ComputationalServer.closeSession(session);
+		}
+	}
+
+	private static ResultStreamer createResultStreamer(QuerySession session) {
+		return new ResultStreamer(session.getQueryId(), MAX_SIZE);
+	}
+
+	// The fragments after the first one rejected by the client are not sent
+	private static void sendJoinResult(QuerySession session, List<Triple<String, String, String>> joinResult) {
+		try {
+			int numberOfFragments = (int) Math.ceil(joinResult.size() / (double) MAX_SIZE);
+			for (int i = 0, j = 0; i < joinResult.size(); i += MAX_SIZE, j++) {
+				session.checkCancelled();
+				int end = Math.min(joinResult.size(), i + MAX_SIZE);
+				Response response = ComputationalServer.sendFragment(new ResultMessage(session.getQueryId(),
+						joinResult.subList(i, end), j, numberOfFragments));
+				response.close();
+				if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+					Logger.err(ComputationalServer.class, "Fragment " + j + " of query " + session.getQueryId() +
+							" rejected with status: " + response.getStatus());
+					return;
 				}
 			}
+		} catch (JsonProcessingException e) {
+			Logger.err(ComputationalServer.class, e);
 		}
-		return result;
 	}
 
-	public static void distributedJoin() {
-		Set<String> senderNames = ComputationalServer.distributedMessageBuffer.keySet();
+	static Response sendFragment(ResultMessage message) throws JsonProcessingException {
+		String url = Network.createURL(
+				ComputationalServer.clientAddr,
+				ComputationalServer.clientPort,
+				ComputationalServer.JOIN_RESULT_PATH);
+		if (ComputationalServer.wireFormat == WireFormat.BINARY) {
+			return Network.post(ComputationalServer.client, url, BinaryCodec.encode(message), BinaryCodec.MEDIA_TYPE);
+		}
+		return Network.post(ComputationalServer.client, url, CustomJsonParser.serializeObject(message));
+	}
+
+	// Only the parallel join buffers both relations: with 'joinParallelism' <= 1 the pipelined join is used
+	private static void doJoin(Relation firstRelation, Relation secondRelation, JoinSink target)
+			throws InterruptedException, ExecutionException {
+		ComputationalServer.parallelJoin.join(firstRelation, secondRelation,
+				ComputationalServer.simulationConfigFile.getTamperingProbability(),
+				ComputationalServer.simulationConfigFile.getLazyProbability(), target);
+	}
+
+	private static void distributedJoin(QuerySession session) {
+		Set<String> senderNames = session.getDistributedRelationBuffer().keySet();
 		assert senderNames.size() == 2;
 
-		ArrayList<DistributedJoinQueryMessage> messages;
+		ArrayList<String> senders;
 
 		// SPECIAL CASE FOR SIMULATION PURPOSES: KEEP ORDER: FIRST 'L' THEN 'R'
 		if (senderNames.contains("L") && senderNames.contains("R")) {
-			messages = new ArrayList<>() {{
-				add(ComputationalServer.distributedMessageBuffer.get("L"));
-				add(ComputationalServer.distributedMessageBuffer.get("R"));
-			}};
+			senders = new ArrayList<>(List.of("L", "R"));
 		} else {
-			messages = new ArrayList<>(ComputationalServer.distributedMessageBuffer.values());
+			senders = new ArrayList<>(senderNames);
 		}
-		assert messages.size() == 2;
-		JoinQueryMessage firstJoinMessage = messages.get(0).getJoinQueryMessage();
-		JoinQueryMessage secondJoinMessage = messages.get(1).getJoinQueryMessage();
-		List<String> workers = messages.get(0).getWorkers();
-		assert workers.equals(messages.get(1).getWorkers());
-		List<Pair<String, String>> firstRelation = firstJoinMessage.getRelation();
-		List<Pair<String, String>> secondRelation = secondJoinMessage.getRelation();
-		int firstJoinIndex = firstJoinMessage.getJoinAttribute();
-		int secondJoinIndex = secondJoinMessage.getJoinAttribute();
+		assert senders.size() == 2;
+		Relation firstRelation = session.getDistributedRelationBuffer().get(senders.get(0));
+		Relation secondRelation = session.getDistributedRelationBuffer().get(senders.get(1));
+		List<String> workers = session.getDistributedWorkersBuffer().get(senders.get(0));
+		assert workers.equals(session.getDistributedWorkersBuffer().get(senders.get(1)));
 
 		try {
-			List<List<Triple<String, String, String>>> joinMap = ComputationalServer.mapJoin(workers,
-					firstRelation, secondRelation, firstJoinIndex, secondJoinIndex);
-			List<Triple<String, String, String>> joinResult = ComputationalServer.reduceJoin(joinMap);
-			ComputationalServer.sendJoinResult(joinResult);
-		} catch (InterruptedException e) {
+			if (ComputationalServer.streamResults) {
+				// Every worker's result is sent while the other workers are still joining
+				ResultStreamer streamer = ComputationalServer.createResultStreamer(session);
+				session.setStreamer(streamer);
+				try {
+					ComputationalServer.mapJoin(session, workers, firstRelation, secondRelation, streamer::acceptAll);
+				} catch (InterruptedException | ExecutionException | RuntimeException e) {
+					streamer.abort();
+					throw e;
+				}
+				streamer.finish();
+				session.setStreamer(null);
+			} else {
+				List<List<Triple<String, String, String>>> joinMap = new ArrayList<>(workers.size());
+				ComputationalServer.mapJoin(session, workers, firstRelation, secondRelation, joinMap::add);
+				List<Triple<String, String, String>> joinResult = ComputationalServer.reduceJoin(joinMap);
+				ComputationalServer.sendJoinResult(session, joinResult);
+			}
+		} catch (InterruptedException | ExecutionException e) {
 			Logger.err(ComputationalServer.class, e);
 		} finally {
-			distributedMessageBuffer.clear();
+			ComputationalServer.closeSession(session);
 		}
 	}
 
-	private static List<List<Triple<String, String, String>>> mapJoin(List<String> workerIds,
-	                                                                  List<Pair<String, String>> firstRelation,
-	                                                                  List<Pair<String, String>> secondRelation,
-	                                                                  int firsJoinIndex, int secondJoinIndex)
-			throws InterruptedException {
+	// Run the workers, handing the result of each worker to 'reduce' as soon as the worker completes
+	private static void mapJoin(QuerySession session,
+	                            List<String> workerIds,
+	                            Relation firstRelation,
+	                            Relation secondRelation,
+	                            Consumer<List<Triple<String, String, String>>> reduce)
+			throws InterruptedException, ExecutionException {
 		int numOfWorkers = workerIds.size();
-		Logger.info(ComputationalServer.class, "Number of workers: " + numOfWorkers, LogLevel.COMPLETE);
-		Map<String, Map<Character, List<Pair<String, String>>>> assignments = new HashMap<>();
+		Logger.info(ComputationalServer.class, "Number of workers: " + numOfWorkers +
+				" | Worker pool size: " + ComputationalServer.workerRuntime.getPoolSize(), LogLevel.COMPLETE);
+		Map<String, Map<Character, Relation>> assignments = new HashMap<>();
+
+		// Tuples are routed on their left value, as done by the storage servers
+		List<Relation> firstPartitions = RelationPartitioner.partition(firstRelation, 0,
+				numOfWorkers, joinAttr -> ComputationalServer.assignTupleToWorkerIndex(joinAttr, numOfWorkers));
+		List<Relation> secondPartitions = RelationPartitioner.partition(secondRelation, 0,
+				numOfWorkers, joinAttr -> ComputationalServer.assignTupleToWorkerIndex(joinAttr, numOfWorkers));
+		Map<String, Integer> workerIndexes = new HashMap<>();
+		for (int i = 0; i < numOfWorkers; i++) {
+			workerIndexes.put(ComputationalServer.assignTupleToWorker(i), i);
+		}
 
 		for (String workerId : workerIds) {
+			Integer workerIndex = workerIndexes.get(workerId);
 			assignments.computeIfAbsent(workerId, k -> new HashMap<>());
-			assignments.get(workerId).computeIfAbsent('L', k -> new ArrayList<>());
-			assignments.get(workerId).computeIfAbsent('R', k -> new ArrayList<>());
-			assignments.get(workerId).get('L').addAll(firstRelation.stream().filter(p ->
-					ComputationalServer.assignTupleToWorker(p.getLeft(), numOfWorkers).equals(workerId)).toList());
-			assignments.get(workerId).get('R').addAll(secondRelation.stream().filter(p ->
-					ComputationalServer.assignTupleToWorker(p.getLeft(), numOfWorkers).equals(workerId)).toList());
+			assignments.get(workerId).put('L', workerIndex == null ?
+					new Relation(firstRelation.getQueryId(), firstRelation.getSender(),
+							firstRelation.getJoinAttribute(), 0) :
+					firstPartitions.get(workerIndex));
+			assignments.get(workerId).put('R', workerIndex == null ?
+					new Relation(secondRelation.getQueryId(), secondRelation.getSender(),
+							secondRelation.getJoinAttribute(), 0) :
+					secondPartitions.get(workerIndex));
 		}
 
-		Logger.info(ComputationalServer.class, assignments.toString(), LogLevel.REQUIRED);
+		Logger.info(ComputationalServer.class, "Tuples assigned to " + assignments.size() + " workers: " +
+				firstRelation.size() + " of " + firstRelation.getSender() + ", " + secondRelation.size() + " of " +
+				secondRelation.getSender(), LogLevel.COMPLETE);
 		float tamperingProbability = ComputationalServer.simulationConfigFile.getTamperingProbability();
 		float lazyProbability = ComputationalServer.simulationConfigFile.getLazyProbability();
 		float trustedWorkers = ComputationalServer.simulationConfigFile.getTrustedWorkers();
 
 		assert trustedWorkers >= 0.0 && trustedWorkers <= 1.0;
 		int numOfTrusted = Math.round(numOfWorkers * trustedWorkers);
-		Worker[] workers = new Worker[numOfWorkers];
-		List<List<Triple<String, String, String>>> joinResults = new ArrayList<>(numOfWorkers);
+		CompletionService<List<Triple<String, String, String>>> completion =
+				ComputationalServer.workerRuntime.newCompletionService();
+		Set<Future<List<Triple<String, String, String>>>> workers = new HashSet<>(numOfWorkers);
 
 		assert !assignments.isEmpty();
 		for (int i = 0; i < numOfWorkers; i++) {
 			String workerId = workerIds.get(i);
 			if (!assignments.get(workerId).get('L').isEmpty() && !assignments.get(workerId).get('R').isEmpty()) {
+				Worker worker;
 				if (i < numOfTrusted) {
-					workers[i] = new Worker(
+					worker = new Worker(
 							workerId,
 							assignments.get(workerId).get('L'),
 							assignments.get(workerId).get('R'),
-							firsJoinIndex,
-							secondJoinIndex,
 							0,
 							0
 					);
 				} else {
-					workers[i] = new Worker(
+					worker = new Worker(
 							workerId,
 							assignments.get(workerId).get('L'),
 							assignments.get(workerId).get('R'),
-							firsJoinIndex,
-							secondJoinIndex,
 							tamperingProbability,
 							lazyProbability
 					);
 				}
-				workers[i].start();
-			}
-		}
-		for (int i = 0; i < numOfWorkers; i++) {
-			if (workers[i] != null) {
-				workers[i].join();
+				workers.add(completion.submit(worker));
 			}
 		}
-		for (var worker : workers) {
-			if (worker != null) {
-				assert !worker.isAlive() && worker.getResult() != null :
-						"Thread: " + worker.getWorkerId() + " terminated abnormally!";
-				joinResults.add(worker.getResult());
+		try {
+			while (!workers.isEmpty()) {
+				Future<List<Triple<String, String, String>>> worker = completion.take();
+				// Not referenced anymore once reduced: a streamed result is released fragment by fragment
+				workers.remove(worker);
+				session.checkCancelled();
+				reduce.accept(worker.get());
 			}
+		} catch (InterruptedException | ExecutionException | RuntimeException e) {
+			workers.forEach(worker -> worker.cancel(true));
+			throw e;
 		}
-		return joinResults;
 	}
 
 	public static String assignTupleToWorker(String joinAttrHash, int numOfWorkers) {
-		return "worker_" + ((joinAttrHash.hashCode() & 0x7fffffff) % numOfWorkers);
+		return ComputationalServer.assignTupleToWorker(ComputationalServer.assignTupleToWorkerIndex(joinAttrHash, numOfWorkers));
 	}
 
-	private static List<Triple<String, String, String>> reduceJoin(List<List<Triple<String, String, String>>> joinMap) {
-		return joinMap.parallelStream().reduce((x, y) -> {
-			List<Triple<String, String, String>> l = new ArrayList<>(x);
-			l.addAll(y);
-			return l;
-		}).orElse(new ArrayList<>());
-	}
-
-	protected static Triple<String, String, String> tamper(String first, String second, String third) {
-		String tamperString = Integer.toString(RNG.nextInt());
-		switch (RNG.nextInt(3)) {
-			case 0 -> {
-				return Triple.of(first + tamperString, second, third);
-			}
-			case 1 -> {
-				return Triple.of(first, second + tamperString, third);
-			}
-			case 2 -> {
-				return Triple.of(first, second, third + tamperString);
-			}
-			default -> Logger.err(ComputationalServer.class, "Something wrong with the RNG...");
-		}
-		return null;
+	public static int assignTupleToWorkerIndex(String joinAttrHash, int numOfWorkers) {
+		return (joinAttrHash.hashCode() & 0x7fffffff) % numOfWorkers;
 	}
 
-	public static int addRelation(String serverName, JoinQueryMessage message) {
-		if (message != null) {
-			relationBuffer.put(serverName, message);
-		}
-		return relationBuffer.size();
+	private static String assignTupleToWorker(int workerIndex) {
+		return "worker_" + workerIndex;
 	}
 
-	public static int addDistributedMessage(String serverName, DistributedJoinQueryMessage message) {
-		if (message != null) {
-			distributedMessageBuffer.put(serverName, message);
-		}
-		return distributedMessageBuffer.size();
+	// Concatenate the workers' results without copying them
+	private static List<Triple<String, String, String>> reduceJoin(List<List<Triple<String, String, String>>> joinMap) {
+		return new ConcatenatedList<>(joinMap);
 	}
 
 	public void setIpAddr(String ipAddr) {
@@ -427,4 +568,40 @@ public class ComputationalServer {
 	public String toString() {
 		return Network.createURL(this.getIpAddr(), this.getPort());
 	}
+
+	// Relation received by /join or /distributed-join, bound to its session when the header is read
+	private static final class IncomingRelation implements RelationConsumer {
+		private final boolean distributed;
+		private QuerySession session;
+		private RelationConsumer target;
+		private String sender;
+
+		private IncomingRelation(boolean distributed) {
+			this.distributed = distributed;
+		}
+
+		@Override
+		public void begin(String queryId, String sender, int joinAttribute) {
+			this.session = ComputationalServer.openSession(queryId);
+			this.session.relationStarted();
+			this.sender = sender;
+			this.target = this.distributed ? new Relation() : ComputationalServer.openSessionRelation(this.session);
+			this.target.begin(this.session.getQueryId(), sender, joinAttribute);
+		}
+
+		@Override
+		public void tuple(String left, String right) {
+			this.session.checkCancelled();
+			this.target.tuple(left, right);
+		}
+
+		private String getSender() {
+			return this.sender;
+		}
+
+		@Override
+		public String toString() {
+			return String.valueOf(this.target);
+		}
+	}
 }
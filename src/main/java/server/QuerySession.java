@@ -0,0 +1,175 @@
+package server;
+
+import org.apache.commons.lang3.tuple.Triple;
+import server.join.JoinSink;
+import server.join.PipelinedHashJoin;
+import server.join.Relation;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The QuerySession class.
+ * State of a join query on the CSP: the relations received so far and the result being produced.
+ * Every query runs in its own session, so that concurrent queries never share buffers.
+ * A session cancelled by the client stops receiving relations, joining and sending the result.
+ * A session waiting too long for a relation that is not being received expires and is cancelled as well.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class QuerySession {
+	private final String queryId;
+	private final ConcurrentHashMap<String, Relation> relationBuffer = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Relation> distributedRelationBuffer = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, List<String>> distributedWorkersBuffer = new ConcurrentHashMap<>();
+
+	// Centralized join in progress and its result: either streamed or sent once complete.
+	// Guarded by the session, since a cancellation may come from any thread
+	private PipelinedHashJoin pipelinedJoin;
+	private ResultStreamer streamer;
+	private List<Triple<String, String, String>> result;
+	private volatile boolean cancelled;
+	// Relations being received and received entirely, time of the last change (nanoseconds)
+	private int receiving;
+	private int received;
+	private long lastActivity;
+
+	public QuerySession(String queryId) {
+		this.queryId = queryId;
+		this.cancelled = false;
+		this.receiving = 0;
+		this.received = 0;
+		this.lastActivity = System.nanoTime();
+	}
+
+	public int addRelation(String serverName, Relation relation) {
+		if (relation != null) {
+			this.relationBuffer.put(serverName, relation);
+		}
+		return this.relationBuffer.size();
+	}
+
+	public int addDistributedRelation(String serverName, Relation relation, List<String> workers) {
+		if (relation != null && workers != null) {
+			this.distributedWorkersBuffer.put(serverName, workers);
+			this.distributedRelationBuffer.put(serverName, relation);
+		}
+		return this.distributedRelationBuffer.size();
+	}
+
+	public String getQueryId() {
+		return this.queryId;
+	}
+
+	public ConcurrentHashMap<String, Relation> getRelationBuffer() {
+		return this.relationBuffer;
+	}
+
+	public ConcurrentHashMap<String, Relation> getDistributedRelationBuffer() {
+		return this.distributedRelationBuffer;
+	}
+
+	public ConcurrentHashMap<String, List<String>> getDistributedWorkersBuffer() {
+		return this.distributedWorkersBuffer;
+	}
+
+	public synchronized PipelinedHashJoin getPipelinedJoin() {
+		return this.pipelinedJoin;
+	}
+
+	public synchronized void setPipelinedJoin(PipelinedHashJoin pipelinedJoin) {
+		this.pipelinedJoin = pipelinedJoin;
+	}
+
+	public synchronized ResultStreamer getStreamer() {
+		return this.streamer;
+	}
+
+	public synchronized void setStreamer(ResultStreamer streamer) {
+		if (streamer != null && this.cancelled) {
+			streamer.abort();
+		}
+		this.streamer = streamer;
+	}
+
+	public synchronized List<Triple<String, String, String>> getResult() {
+		return this.result;
+	}
+
+	public synchronized void setResult(List<Triple<String, String, String>> result) {
+		this.result = result;
+	}
+
+	public synchronized void relationStarted() {
+		this.checkCancelled();
+		this.receiving++;
+		this.lastActivity = System.nanoTime();
+	}
+
+	public synchronized void relationReceived() {
+		this.receiving--;
+		this.received++;
+		this.lastActivity = System.nanoTime();
+	}
+
+	// Cancel the session if it has been waiting for its relations for more than 'timeout' nanoseconds:
+	// a session receiving a relation or joining both of them never expires
+	public synchronized boolean expire(long timeout) {
+		if (this.cancelled || this.receiving > 0 || this.received >= 2 ||
+				System.nanoTime() - this.lastActivity < timeout) {
+			return false;
+		}
+		this.cancel();
+		return true;
+	}
+
+	// The client has rejected the result: the threads working on the query stop at their next check
+	public synchronized void cancel() {
+		this.cancelled = true;
+		if (this.streamer != null) {
+			this.streamer.abort();
+		}
+	}
+
+	public boolean isCancelled() {
+		return this.cancelled;
+	}
+
+	public void checkCancelled() {
+		if (this.cancelled) {
+			throw new CancellationException("Query " + this.queryId + " cancelled");
+		}
+	}
+
+	// Sink stopping the join as soon as the query is cancelled
+	public JoinSink cancellable(JoinSink target) {
+		return (joinAttribute, first, second) -> {
+			this.checkCancelled();
+			target.emit(joinAttribute, first, second);
+		};
+	}
+
+	// Drop the buffered relations and stop streaming a result that will not be completed
+	public synchronized void clear() {
+		if (this.streamer != null) {
+			this.streamer.abort();
+		}
+		this.pipelinedJoin = null;
+		this.streamer = null;
+		this.result = null;
+		this.relationBuffer.clear();
+		this.distributedRelationBuffer.clear();
+		this.distributedWorkersBuffer.clear();
+	}
+
+	@Override
+	public String toString() {
+		return "QuerySession{" +
+				"queryId=" + queryId +
+				", relations=" + relationBuffer.size() +
+				", distributedRelations=" + distributedRelationBuffer.size() +
+				'}';
+	}
+}
@@ -0,0 +1,151 @@
+package server;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import communication.ResultMessage;
+import jakarta.ws.rs.core.Response;
+import org.apache.commons.lang3.tuple.Triple;
+import server.join.JoinSink;
+import utility.LogLevel;
+import utility.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * The ResultStreamer class.
+ * Send the join result to the client one fragment at a time while the join is still running.
+ * Full fragments are handed to a sender thread through a bounded queue: when the client is slow
+ * the join blocks until a fragment has been delivered, bounding the memory used by the result.
+ * Once a fragment is rejected by the client or the streamer is aborted, nothing else is sent
+ * and the next fragment produced stops the join with a CancellationException, as does finish().
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class ResultStreamer implements JoinSink {
+	private static final int MAX_QUEUED_FRAGMENTS = 4;
+	private final String queryId;
+	private final int fragmentSize;
+	private final BlockingQueue<ResultMessage> queue;
+	private final Thread sender;
+	private List<Triple<String, String, String>> fragment;
+	// The last full fragment is held back until we know whether it is the final one
+	private List<Triple<String, String, String>> pending;
+	private int numberOfFragments;
+	private volatile boolean failed;
+
+	public ResultStreamer(String queryId, int fragmentSize) {
+		this.queryId = queryId;
+		this.fragmentSize = fragmentSize;
+		this.queue = new ArrayBlockingQueue<>(MAX_QUEUED_FRAGMENTS);
+		this.fragment = new ArrayList<>(fragmentSize);
+		this.pending = null;
+		this.numberOfFragments = 0;
+		this.failed = false;
+		this.sender = new Thread(this::sendFragments, "result-streamer");
+		this.sender.setDaemon(true);
+		this.sender.start();
+	}
+
+	@Override
+	public void emit(String joinAttribute, String first, String second) {
+		this.accept(Triple.of(joinAttribute, first, second));
+	}
+
+	public void accept(Triple<String, String, String> tuple) {
+		this.fragment.add(tuple);
+		if (this.fragment.size() == this.fragmentSize) {
+			if (this.pending != null) {
+				this.enqueue(this.pending, false);
+			}
+			this.pending = this.fragment;
+			this.fragment = new ArrayList<>(this.fragmentSize);
+		}
+	}
+
+	public void acceptAll(List<Triple<String, String, String>> tuples) {
+		for (Triple<String, String, String> t : tuples) {
+			this.accept(t);
+		}
+	}
+
+	// Send the remaining tuples flagging the final fragment and wait for the delivery:
+	// throws CancellationException if the client has not received the whole result
+	public void finish() throws InterruptedException {
+		if (this.fragment.isEmpty() && this.pending != null) {
+			this.enqueue(this.pending, true);
+		} else {
+			if (this.pending != null) {
+				this.enqueue(this.pending, false);
+			}
+			this.enqueue(this.fragment, true);
+		}
+		this.pending = null;
+		this.fragment = null;
+		this.sender.join();
+		if (this.failed) {
+			throw new CancellationException("Result of query " + this.queryId + " not delivered: fragment not sent");
+		}
+		Logger.info(this, "Result of query " + this.queryId + " sent in " + this.numberOfFragments + " fragments",
+				LogLevel.COMPLETE);
+	}
+
+	// Stop sending without flagging a final fragment: the result is incomplete
+	public void abort() {
+		this.failed = true;
+		this.sender.interrupt();
+	}
+
+	private void enqueue(List<Triple<String, String, String>> tuples, boolean last) {
+		if (this.failed) {
+			throw new CancellationException("Result of query " + this.queryId + " not sent: query cancelled or rejected");
+		}
+		int id = this.numberOfFragments++;
+		ResultMessage message = new ResultMessage(this.queryId, tuples, id,
+				last ? this.numberOfFragments : ResultMessage.UNKNOWN_NUMBER_OF_FRAGMENTS);
+		try {
+			this.queue.put(message);
+		} catch (InterruptedException e) {
+			// The fragment is lost: the result cannot be completed anymore
+			this.abort();
+			throw new CancellationException("Result of query " + this.queryId + " not sent: interrupted");
+		}
+	}
+
+	private void sendFragments() {
+		try {
+			ResultMessage message;
+			do {
+				message = this.queue.take();
+				if (!this.failed) {
+					this.send(message);
+				}
+			} while (message.getNumberOfFragments() == ResultMessage.UNKNOWN_NUMBER_OF_FRAGMENTS && !this.failed);
+		} catch (InterruptedException e) {
+			if (!this.failed) {
+				Logger.err(this, e);
+			}
+		} finally {
+			// Unblock the join waiting for room in the queue: it stops at its next fragment
+			this.queue.clear();
+		}
+	}
+
+	private void send(ResultMessage message) {
+		try {
+			Logger.info(this, "Sending fragment with id: " + message.getId(), LogLevel.COMPLETE);
+			Response response = ComputationalServer.sendFragment(message);
+			if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+				Logger.err(this, "Fragment " + message.getId() + " rejected with status: " + response.getStatus());
+				this.failed = true;
+			}
+			response.close();
+		} catch (JsonProcessingException e) {
+			Logger.err(this, e);
+			this.failed = true;
+		}
+	}
+}
@@ -11,6 +11,7 @@ import utility.CustomJsonParser;
 import utility.LogLevel;
 import utility.Logger;
 import utility.Network;
+import utility.WireFormat;
 
 import java.io.IOException;
 import java.net.URI;
@@ -47,6 +48,7 @@ public class StorageServer {
     private static int cspPort;
     private static String clientAddr;
     private static int clientPort;
+    private static WireFormat wireFormat;
     private static final String JOIN_CSP_PATH = "join";
     private static final String DISTRIBUTED_JOIN_CSP_PATH = "distributed-join";
 
@@ -69,6 +71,8 @@ public class StorageServer {
         StorageServer.cspPort = Integer.parseInt(cspParams.get("port"));
         StorageServer.clientAddr = clientParams.get("ipAddr");
         StorageServer.clientPort = Integer.parseInt(clientParams.get("port"));
+        StorageServer.wireFormat = simulationConfigFile.getWireFormat() == null ?
+                WireFormat.JSON : simulationConfigFile.getWireFormat();
     }
 
     // Handle REST requests
@@ -198,6 +202,10 @@ public class StorageServer {
         return StorageServer.DISTRIBUTED_JOIN_CSP_PATH;
     }
 
+    public static WireFormat getWireFormat() {
+        return StorageServer.wireFormat;
+    }
+
     public static String getNmaxSaltsClientPath() {
         return StorageServer.NMAX_SALTS_CLIENT_PATH;
     }
@@ -0,0 +1,51 @@
+package server;
+
+import org.apache.commons.lang3.tuple.Triple;
+import server.join.HashJoinKernel;
+
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The WorkerRuntime class.
+ * Long-lived pool executing the CSP's workers.
+ * Workers are logical: any number of them can be scheduled on the pool's threads,
+ * each of which keeps its join kernel buffers from one query to the next.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class WorkerRuntime {
+	private static final ThreadLocal<HashJoinKernel> kernels = ThreadLocal.withInitial(HashJoinKernel::new);
+	private final ExecutorService executor;
+	private final int poolSize;
+
+	public WorkerRuntime(int poolSize) {
+		assert poolSize > 0;
+		this.poolSize = poolSize;
+		AtomicInteger threadCounter = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(poolSize, r -> {
+			Thread thread = new Thread(r, "worker-runtime-" + threadCounter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	// Workers submitted to the returned service are retrieved in completion order
+	public CompletionService<List<Triple<String, String, String>>> newCompletionService() {
+		return new ExecutorCompletionService<>(this.executor);
+	}
+
+	public int getPoolSize() {
+		return this.poolSize;
+	}
+
+	// Scratch kernel of the calling pool thread
+	static HashJoinKernel kernel() {
+		return WorkerRuntime.kernels.get();
+	}
+}
@@ -0,0 +1,82 @@
+package server.join;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * The ConcatenatedList class.
+ * Read-only view of several lists as a single list, without copying their elements.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class ConcatenatedList<T> extends AbstractList<T> implements RandomAccess {
+	private final List<List<T>> lists;
+	// offsets[i] is the index of the first element of lists.get(i)
+	private final int[] offsets;
+	private final int size;
+
+	public ConcatenatedList(List<List<T>> lists) {
+		this.lists = lists;
+		this.offsets = new int[lists.size()];
+		int total = 0;
+		for (int i = 0; i < lists.size(); i++) {
+			this.offsets[i] = total;
+			total += lists.get(i).size();
+		}
+		this.size = total;
+	}
+
+	@Override
+	public T get(int index) {
+		if (index < 0 || index >= this.size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+		}
+		int list = Arrays.binarySearch(this.offsets, index);
+		if (list < 0) {
+			list = -list - 2;
+		} else {
+			// Skip empty lists sharing the same offset
+			while (this.lists.get(list).isEmpty()) {
+				list++;
+			}
+		}
+		return this.lists.get(list).get(index - this.offsets[list]);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<>() {
+			private int list = 0;
+			private Iterator<T> current = ConcatenatedList.this.lists.isEmpty() ?
+					null : ConcatenatedList.this.lists.get(0).iterator();
+
+			@Override
+			public boolean hasNext() {
+				while (this.current != null && !this.current.hasNext()) {
+					this.list++;
+					this.current = this.list < ConcatenatedList.this.lists.size() ?
+							ConcatenatedList.this.lists.get(this.list).iterator() : null;
+				}
+				return this.current != null;
+			}
+
+			@Override
+			public T next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return this.current.next();
+			}
+		};
+	}
+}
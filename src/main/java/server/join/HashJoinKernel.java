@@ -0,0 +1,167 @@
+package server.join;
+
+import java.util.Arrays;
+
+/**
+ * The HashJoinKernel class.
+ * Equi-join on the encrypted join attribute shared by the centralized and the distributed join.
+ * The build side is stored in an open addressing table whose slots point to chains of row indexes,
+ * so that neither the build nor the probe phase allocates per tuple.
+ * An instance can be reused across joins: its arrays only grow.
+ * The build side can also be inserted one row at a time when its size is not known in advance.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public final class HashJoinKernel {
+	private static final int EMPTY = -1;
+	private static final int MIN_TABLE_SIZE = 16;
+
+	// Build side rows: join attribute, other attribute and next row with the same join attribute
+	private String[] keys = new String[0];
+	private String[] values = new String[0];
+	private int[] next = new int[0];
+	private int numberOfRows;
+
+	// Open addressing table: first and last row of each join attribute value
+	private int[] heads = new int[0];
+	private int[] tails = new int[0];
+	private int mask;
+
+	public void join(Relation firstRelation, Relation secondRelation, JoinSink sink) {
+		this.build(firstRelation);
+		this.probe(secondRelation, sink);
+	}
+
+	public void build(Relation relation) {
+		this.clear();
+		this.ensureCapacity(relation.size());
+		for (int i = 0; i < relation.size(); i++) {
+			this.insert(relation.getJoinValue(i), relation.getOtherValue(i));
+		}
+	}
+
+	public void probe(Relation relation, JoinSink sink) {
+		for (int i = 0; i < relation.size(); i++) {
+			this.probe(relation.getJoinValue(i), relation.getOtherValue(i), sink);
+		}
+	}
+
+	public void probe(String joinAttribute, String other, JoinSink sink) {
+		int slot = this.find(joinAttribute);
+		if (slot != EMPTY) {
+			for (int row = this.heads[slot]; row != EMPTY; row = this.next[row]) {
+				sink.emit(joinAttribute, this.values[row], other);
+			}
+		}
+	}
+
+	// Insert a row growing the kernel when needed: the kernel must have been initialized by ensureCapacity
+	public void add(String joinAttribute, String other) {
+		if (this.numberOfRows == this.keys.length) {
+			int capacity = Math.max(MIN_TABLE_SIZE, this.numberOfRows + (this.numberOfRows >> 1));
+			this.keys = Arrays.copyOf(this.keys, capacity);
+			this.values = Arrays.copyOf(this.values, capacity);
+			this.next = Arrays.copyOf(this.next, capacity);
+		}
+		if ((this.numberOfRows + 1) * 2 > this.mask + 1) {
+			this.rehash((this.mask + 1) * 2);
+		}
+		this.insert(joinAttribute, other);
+	}
+
+	public void insert(String joinAttribute, String other) {
+		int row = this.numberOfRows++;
+		this.keys[row] = joinAttribute;
+		this.values[row] = other;
+		this.next[row] = EMPTY;
+
+		int slot = HashJoinKernel.hash(joinAttribute) & this.mask;
+		while (this.heads[slot] != EMPTY) {
+			if (this.keys[this.heads[slot]].equals(joinAttribute)) {
+				this.next[this.tails[slot]] = row;
+				this.tails[slot] = row;
+				return;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		this.heads[slot] = row;
+		this.tails[slot] = row;
+	}
+
+	public int size() {
+		return this.numberOfRows;
+	}
+
+	// Join attribute of a build side row: rows are numbered in insertion order
+	public String getKey(int row) {
+		return this.keys[row];
+	}
+
+	// Other attribute of a build side row
+	public String getValue(int row) {
+		return this.values[row];
+	}
+
+	// Drop the references to the last build side, keeping the arrays for the next join
+	public void clear() {
+		Arrays.fill(this.keys, 0, this.numberOfRows, null);
+		Arrays.fill(this.values, 0, this.numberOfRows, null);
+		this.numberOfRows = 0;
+	}
+
+	// Must be called on an empty kernel before inserting 'numberOfRows' rows
+	public void ensureCapacity(int numberOfRows) {
+		assert this.numberOfRows == 0;
+		if (this.keys.length < numberOfRows) {
+			this.keys = new String[numberOfRows];
+			this.values = new String[numberOfRows];
+			this.next = new int[numberOfRows];
+		}
+		// Load factor <= 0.5
+		int tableSize = Math.max(MIN_TABLE_SIZE, Integer.highestOneBit(Math.max(1, numberOfRows) - 1) << 2);
+		if (this.heads.length < tableSize) {
+			this.heads = new int[tableSize];
+			this.tails = new int[tableSize];
+		}
+		this.mask = tableSize - 1;
+		Arrays.fill(this.heads, 0, tableSize, EMPTY);
+	}
+
+	// Move the chains to a larger table: the rows and their links are left untouched
+	private void rehash(int tableSize) {
+		int[] oldHeads = this.heads;
+		int[] oldTails = this.tails;
+		int oldTableSize = this.mask + 1;
+		this.heads = new int[tableSize];
+		this.tails = new int[tableSize];
+		this.mask = tableSize - 1;
+		Arrays.fill(this.heads, EMPTY);
+		for (int oldSlot = 0; oldSlot < oldTableSize; oldSlot++) {
+			if (oldHeads[oldSlot] != EMPTY) {
+				int slot = HashJoinKernel.hash(this.keys[oldHeads[oldSlot]]) & this.mask;
+				while (this.heads[slot] != EMPTY) {
+					slot = (slot + 1) & this.mask;
+				}
+				this.heads[slot] = oldHeads[oldSlot];
+				this.tails[slot] = oldTails[oldSlot];
+			}
+		}
+	}
+
+	private int find(String joinAttribute) {
+		int slot = HashJoinKernel.hash(joinAttribute) & this.mask;
+		while (this.heads[slot] != EMPTY) {
+			if (this.keys[this.heads[slot]].equals(joinAttribute)) {
+				return slot;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		return EMPTY;
+	}
+
+	static int hash(String joinAttribute) {
+		int h = joinAttribute.hashCode();
+		return h ^ (h >>> 16);
+	}
+}
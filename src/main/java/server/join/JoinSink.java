@@ -0,0 +1,21 @@
+package server.join;
+
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.util.List;
+
+/**
+ * The JoinSink interface.
+ * Receiver of the tuples emitted by the join kernels.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+@FunctionalInterface
+public interface JoinSink {
+	void emit(String joinAttribute, String first, String second);
+
+	static JoinSink into(List<Triple<String, String, String>> result) {
+		return (joinAttribute, first, second) -> result.add(Triple.of(joinAttribute, first, second));
+	}
+}
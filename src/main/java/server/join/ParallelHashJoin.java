@@ -0,0 +1,89 @@
+package server.join;
+
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The ParallelHashJoin class.
+ * Partitioned hash join running on a fork-join pool.
+ * Both relations are radix partitioned on the join attribute and every pair of partitions
+ * is joined by a separate task with its own kernel and random generator.
+ * Once the target stops the join, e.g. because the query has been cancelled, the partitions still running
+ * stop at the next tuple they produce.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class ParallelHashJoin {
+	// More partitions than threads to balance skewed join attribute values
+	private static final int PARTITIONS_PER_THREAD = 4;
+	private static final ThreadLocal<HashJoinKernel> kernels = ThreadLocal.withInitial(HashJoinKernel::new);
+	private final ForkJoinPool pool;
+	private final int numberOfPartitions;
+
+	public ParallelHashJoin(int parallelism) {
+		assert parallelism > 0;
+		this.pool = new ForkJoinPool(parallelism);
+		this.numberOfPartitions = Integer.highestOneBit(parallelism * PARTITIONS_PER_THREAD - 1) << 1;
+	}
+
+	public void join(Relation firstRelation, Relation secondRelation,
+	                 float tamperingProbability, float lazyProbability, JoinSink target)
+			throws InterruptedException, ExecutionException {
+		List<Relation> firstPartitions = RelationPartitioner.partition(firstRelation, this.numberOfPartitions);
+		List<Relation> secondPartitions = RelationPartitioner.partition(secondRelation, this.numberOfPartitions);
+
+		// Set once the join is over: the partitions still running stop at their next tuple
+		AtomicBoolean stopped = new AtomicBoolean();
+		List<Future<List<Triple<String, String, String>>>> partialResults = new ArrayList<>(this.numberOfPartitions);
+		for (int i = 0; i < this.numberOfPartitions; i++) {
+			Relation firstPartition = firstPartitions.get(i);
+			Relation secondPartition = secondPartitions.get(i);
+			if (!firstPartition.isEmpty() && !secondPartition.isEmpty()) {
+				partialResults.add(this.pool.submit(() -> ParallelHashJoin.joinPartition(
+						firstPartition, secondPartition, tamperingProbability, lazyProbability, stopped)));
+			}
+		}
+
+		// Hand over each partition's result as soon as it is available
+		try {
+			for (Future<List<Triple<String, String, String>>> partialResult : partialResults) {
+				for (Triple<String, String, String> t : partialResult.get()) {
+					target.emit(t.getLeft(), t.getMiddle(), t.getRight());
+				}
+			}
+		} finally {
+			// Cancelling does not interrupt the fork-join tasks already running: they check 'stopped' instead
+			stopped.set(true);
+			partialResults.forEach(partialResult -> partialResult.cancel(false));
+		}
+	}
+
+	private static List<Triple<String, String, String>> joinPartition(Relation firstPartition, Relation secondPartition,
+	                                                                  float tamperingProbability, float lazyProbability,
+	                                                                  AtomicBoolean stopped) {
+		List<Triple<String, String, String>> result = new ArrayList<>();
+		JoinSink partialResult = JoinSink.into(result);
+		HashJoinKernel kernel = ParallelHashJoin.kernels.get();
+		try {
+			kernel.join(firstPartition, secondPartition,
+					new SimulatedJoinSink((joinAttribute, first, second) -> {
+						if (stopped.get()) {
+							throw new CancellationException("Partition join stopped");
+						}
+						partialResult.emit(joinAttribute, first, second);
+					}, tamperingProbability, lazyProbability, ThreadLocalRandom.current()));
+		} finally {
+			kernel.clear();
+		}
+		return result;
+	}
+}
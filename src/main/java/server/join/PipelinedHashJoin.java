@@ -0,0 +1,177 @@
+package server.join;
+
+import communication.RelationConsumer;
+
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * The PipelinedHashJoin class.
+ * Centralized join overlapping the transfer of the two relations with the join itself.
+ * The first relation to arrive is inserted in the hash table while it is received.
+ * The second one is probed while it is received once the table is complete, otherwise it is buffered:
+ * when both relations are complete and the buffered one is smaller, it becomes the build side.
+ * The relation of the lowest sender name always provides the first payload of the result.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class PipelinedHashJoin {
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final Comparator<String> SENDER_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+	private final JoinSink target;
+	private final float tamperingProbability;
+	private final float lazyProbability;
+	private final Random rng;
+	private final HashJoinKernel kernel;
+	private BuildSide buildSide;
+	private ProbeSide probeSide;
+	private volatile boolean buildComplete;
+	private boolean probeComplete;
+
+	public PipelinedHashJoin(JoinSink target, float tamperingProbability, float lazyProbability, Random rng) {
+		this.target = target;
+		this.tamperingProbability = tamperingProbability;
+		this.lazyProbability = lazyProbability;
+		this.rng = rng;
+		this.kernel = new HashJoinKernel();
+		this.kernel.ensureCapacity(INITIAL_CAPACITY);
+		this.buildComplete = false;
+		this.probeComplete = false;
+	}
+
+	// Consumer for the next relation to be received: the first one is the build side
+	public synchronized RelationConsumer open() {
+		if (this.buildSide == null) {
+			this.buildSide = new BuildSide();
+			return this.buildSide;
+		}
+		if (this.probeSide == null) {
+			this.probeSide = new ProbeSide();
+			return this.probeSide;
+		}
+		throw new IllegalStateException("Both relations of the join have already been received");
+	}
+
+	// To be called once 'relation' has been received entirely: returns true if the join is complete
+	public boolean close(RelationConsumer relation) {
+		boolean complete;
+		synchronized (this) {
+			if (relation == this.buildSide) {
+				this.buildComplete = true;
+				complete = this.probeComplete;
+			} else if (relation == this.probeSide) {
+				this.probeComplete = true;
+				complete = this.buildComplete;
+			} else {
+				return false;
+			}
+		}
+		if (complete) {
+			this.finish();
+		}
+		return complete;
+	}
+
+	// Both relations are complete: join the probe side if it has been buffered
+	private void finish() {
+		if (this.probeSide.streaming) {
+			return;
+		}
+		Relation buffered = this.probeSide.buffer;
+		if (buffered.size() < this.kernel.size()) {
+			HashJoinKernel swapped = new HashJoinKernel();
+			swapped.build(buffered);
+			JoinSink sink = this.createSink(buffered.getSender(), this.buildSide.sender);
+			for (int row = 0; row < this.kernel.size(); row++) {
+				swapped.probe(this.kernel.getKey(row), this.kernel.getValue(row), sink);
+			}
+		} else {
+			this.kernel.probe(buffered, this.createSink(this.buildSide.sender, buffered.getSender()));
+		}
+		buffered.clear();
+		this.kernel.clear();
+	}
+
+	// The kernel emits the build side payload first: swap it when the build side is the second relation
+	private JoinSink createSink(String buildSender, String probeSender) {
+		JoinSink oriented = PipelinedHashJoin.SENDER_ORDER.compare(buildSender, probeSender) <= 0 ?
+				this.target :
+				(joinAttribute, build, probe) -> this.target.emit(joinAttribute, probe, build);
+		return new SimulatedJoinSink(oriented, this.tamperingProbability, this.lazyProbability, this.rng);
+	}
+
+	private final class BuildSide implements RelationConsumer {
+		private String sender;
+		private int joinAttribute;
+
+		@Override
+		public void begin(String queryId, String sender, int joinAttribute) {
+			this.sender = sender;
+			this.joinAttribute = joinAttribute;
+		}
+
+		@Override
+		public void tuple(String left, String right) {
+			if (this.joinAttribute == 0) {
+				PipelinedHashJoin.this.kernel.add(left, right);
+			} else {
+				PipelinedHashJoin.this.kernel.add(right, left);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "BuildSide{" +
+					"sender=" + sender +
+					", joinAttribute=" + joinAttribute +
+					", size=" + PipelinedHashJoin.this.kernel.size() +
+					'}';
+		}
+	}
+
+	private final class ProbeSide implements RelationConsumer {
+		// Tuples received before the build side was complete
+		private final Relation buffer = new Relation();
+		private JoinSink sink;
+		private boolean streaming = false;
+		private int size = 0;
+
+		@Override
+		public void begin(String queryId, String sender, int joinAttribute) {
+			this.buffer.begin(queryId, sender, joinAttribute);
+		}
+
+		@Override
+		public void tuple(String left, String right) {
+			this.size++;
+			if (!this.streaming) {
+				if (!PipelinedHashJoin.this.buildComplete) {
+					this.buffer.tuple(left, right);
+					return;
+				}
+				// The build side is complete: catch up with the buffered tuples and probe the next ones directly
+				this.streaming = true;
+				this.sink = PipelinedHashJoin.this.createSink(PipelinedHashJoin.this.buildSide.sender,
+						this.buffer.getSender());
+				PipelinedHashJoin.this.kernel.probe(this.buffer, this.sink);
+				this.buffer.clear();
+			}
+			if (this.buffer.getJoinAttribute() == 0) {
+				PipelinedHashJoin.this.kernel.probe(left, right, this.sink);
+			} else {
+				PipelinedHashJoin.this.kernel.probe(right, left, this.sink);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "ProbeSide{" +
+					"sender=" + this.buffer.getSender() +
+					", joinAttribute=" + this.buffer.getJoinAttribute() +
+					", size=" + size +
+					", streaming=" + streaming +
+					'}';
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package server.join;
+
+import communication.RelationConsumer;
+
+import java.util.Arrays;
+
+/**
+ * The Relation class.
+ * Columnar representation of a relation received by the CSP: the left and right values of
+ * the tuples are stored in two arrays, without a Pair object per tuple.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class Relation implements RelationConsumer {
+	private static final int DEFAULT_CAPACITY = 1024;
+	private String queryId;
+	private String sender;
+	private int joinAttribute;
+	private String[] left;
+	private String[] right;
+	private int size;
+
+	public Relation() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public Relation(int capacity) {
+		this.left = new String[capacity];
+		this.right = new String[capacity];
+		this.size = 0;
+	}
+
+	public Relation(String queryId, String sender, int joinAttribute, int capacity) {
+		this(capacity);
+		this.begin(queryId, sender, joinAttribute);
+	}
+
+	@Override
+	public void begin(String queryId, String sender, int joinAttribute) {
+		this.queryId = queryId;
+		this.sender = sender;
+		this.joinAttribute = joinAttribute;
+	}
+
+	@Override
+	public void tuple(String left, String right) {
+		if (this.size == this.left.length) {
+			int capacity = Math.max(DEFAULT_CAPACITY, this.size + (this.size >> 1));
+			this.left = Arrays.copyOf(this.left, capacity);
+			this.right = Arrays.copyOf(this.right, capacity);
+		}
+		this.left[this.size] = left;
+		this.right[this.size] = right;
+		this.size++;
+	}
+
+	// Drop the tuples, keeping query id, sender and join attribute
+	public void clear() {
+		Arrays.fill(this.left, 0, this.size, null);
+		Arrays.fill(this.right, 0, this.size, null);
+		this.size = 0;
+	}
+
+	public String getLeft(int i) {
+		return this.left[i];
+	}
+
+	public String getRight(int i) {
+		return this.right[i];
+	}
+
+	// Value of the join attribute of the i-th tuple
+	public String getJoinValue(int i) {
+		return this.joinAttribute == 0 ? this.left[i] : this.right[i];
+	}
+
+	// Value of the other attribute of the i-th tuple
+	public String getOtherValue(int i) {
+		return this.joinAttribute == 0 ? this.right[i] : this.left[i];
+	}
+
+	public String getQueryId() {
+		return this.queryId;
+	}
+
+	public String getSender() {
+		return this.sender;
+	}
+
+	public int getJoinAttribute() {
+		return this.joinAttribute;
+	}
+
+	public int size() {
+		return this.size;
+	}
+
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "Relation{" +
+				"queryId=" + queryId +
+				", sender=" + sender +
+				", joinAttribute=" + joinAttribute +
+				", size=" + size +
+				'}';
+	}
+}
@@ -0,0 +1,67 @@
+package server.join;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * The RelationPartitioner class.
+ * Single pass partitioning of a relation on one of its attributes.
+ * A first pass computes the partition of every tuple and the partitions' sizes,
+ * a second pass scatters the tuples into exactly sized partitions.
+ * On large relations the first pass is split in chunks computed in parallel.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public final class RelationPartitioner {
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+	private static final int CHUNK_SIZE = 1 << 14;
+
+	private RelationPartitioner() {}
+
+	// Radix partitioning on the join attribute: 'numberOfPartitions' must be a power of two
+	public static List<Relation> partition(Relation relation, int numberOfPartitions) {
+		assert Integer.bitCount(numberOfPartitions) == 1;
+		int shift = Integer.SIZE - Integer.numberOfTrailingZeros(numberOfPartitions);
+		// High bits of the hash: the low ones select the slots of the join kernel table
+		return RelationPartitioner.partition(relation, relation.getJoinAttribute(), numberOfPartitions,
+				value -> numberOfPartitions == 1 ? 0 : HashJoinKernel.hash(value) >>> shift);
+	}
+
+	// 'partitionFunction' maps the value of the attribute 'attributeIndex' (0: left, 1: right)
+	// to a partition in [0, numberOfPartitions)
+	public static List<Relation> partition(Relation relation, int attributeIndex, int numberOfPartitions,
+	                                       ToIntFunction<String> partitionFunction) {
+		int size = relation.size();
+		int[] partitionOf = new int[size];
+		if (size >= PARALLEL_THRESHOLD) {
+			IntStream.range(0, (size + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel().forEach(chunk -> {
+				for (int i = chunk * CHUNK_SIZE, end = Math.min(size, i + CHUNK_SIZE); i < end; i++) {
+					partitionOf[i] = partitionFunction.applyAsInt(
+							attributeIndex == 0 ? relation.getLeft(i) : relation.getRight(i));
+				}
+			});
+		} else {
+			for (int i = 0; i < size; i++) {
+				partitionOf[i] = partitionFunction.applyAsInt(
+						attributeIndex == 0 ? relation.getLeft(i) : relation.getRight(i));
+			}
+		}
+
+		int[] sizes = new int[numberOfPartitions];
+		for (int partition : partitionOf) {
+			sizes[partition]++;
+		}
+		List<Relation> partitions = new ArrayList<>(numberOfPartitions);
+		for (int partitionSize : sizes) {
+			partitions.add(new Relation(relation.getQueryId(), relation.getSender(), relation.getJoinAttribute(),
+					partitionSize));
+		}
+		for (int i = 0; i < size; i++) {
+			partitions.get(partitionOf[i]).tuple(relation.getLeft(i), relation.getRight(i));
+		}
+		return partitions;
+	}
+}
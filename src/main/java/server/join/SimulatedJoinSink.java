@@ -0,0 +1,50 @@
+package server.join;
+
+import utility.Logger;
+
+import java.util.Random;
+
+/**
+ * The SimulatedJoinSink class.
+ * Forward the join result applying the simulated lazy and tampering behaviour of the CSP.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public class SimulatedJoinSink implements JoinSink {
+	private final JoinSink target;
+	private final float tamperingProbability;
+	private final float lazyProbability;
+	private final Random rng;
+
+	public SimulatedJoinSink(JoinSink target, float tamperingProbability, float lazyProbability, Random rng) {
+		assert tamperingProbability >= 0.0 && tamperingProbability <= 1.0 &&
+				lazyProbability >= 0.0 && lazyProbability <= 1.0;
+		this.target = target;
+		this.tamperingProbability = tamperingProbability;
+		this.lazyProbability = lazyProbability;
+		this.rng = rng;
+	}
+
+	@Override
+	public void emit(String joinAttribute, String first, String second) {
+		if (this.rng.nextDouble() >= this.lazyProbability) {
+			if (this.rng.nextDouble() < this.tamperingProbability) {
+				// Tampering with probability 'tamperingProbability'
+				this.tamper(joinAttribute, first, second);
+			} else {
+				this.target.emit(joinAttribute, first, second);
+			}
+		}
+	}
+
+	private void tamper(String first, String second, String third) {
+		String tamperString = Integer.toString(this.rng.nextInt());
+		switch (this.rng.nextInt(3)) {
+			case 0 -> this.target.emit(first + tamperString, second, third);
+			case 1 -> this.target.emit(first, second + tamperString, third);
+			case 2 -> this.target.emit(first, second, third + tamperString);
+			default -> Logger.err(SimulatedJoinSink.class, "Something wrong with the RNG...");
+		}
+	}
+}
@@ -1,24 +1,36 @@
 package server.services;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import communication.DistributedJoinQueryMessage;
-import communication.JoinQueryMessage;
+import communication.CancelQueryMessage;
+import communication.RelationConsumer;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import server.ComputationalServer;
+import utility.BinaryCodec;
 import utility.CustomJsonParser;
 import utility.LogLevel;
 import utility.Logger;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * The ComputationService class.
  * Exposed by: ComputationalServer
  * Endpoints:
  *  /join
  *  /distributed-join
+ *  /cancel
+ * Both join endpoints accept JSON and BinaryCodec payloads, according to the Content-Type.
+ * The request body is parsed as a stream: /join feeds the join while the relation is received,
+ * /distributed-join fills a columnar Relation.
+ * Relations are grouped by query id, so that concurrent queries are joined independently.
+ * /cancel receives the id of a query whose result has been rejected by the client, to stop working on it.
  *
  * @author  Federica Vicini
  * @author  Michele Zenoni
@@ -29,41 +41,100 @@ public class ComputationService {
     @Path("join")
     @POST
     @Consumes({MediaType.APPLICATION_JSON})
-    public Response process(String message) {
-        JoinQueryMessage joinMessage;
+    public Response process(InputStream message) {
+        RelationConsumer relation = ComputationalServer.openRelation(false);
         try {
-            joinMessage = CustomJsonParser.deserializeObject(message, JoinQueryMessage.class);
-            int numOfRelations = ComputationalServer.addRelation(joinMessage.getSender(), joinMessage);
-            Logger.info(this, joinMessage.toString(), LogLevel.REQUIRED);
-            if (numOfRelations == 2) {
-                ComputationalServer.join();
-            }
-        } catch (JsonProcessingException e) {
-            Logger.err(this, e);
-            return Response.serverError().build();
+            CustomJsonParser.readJoinQueryMessage(message, relation);
+        } catch (RejectedExecutionException e) {
+            return this.reject(e);
+        } catch (IOException | CancellationException e) {
+            return this.abort(relation, e);
         }
+        return this.process(relation);
+    }
 
-        return Response.ok().build();
+    @Path("join")
+    @POST
+    @Consumes({BinaryCodec.MEDIA_TYPE})
+    public Response processBinary(InputStream message) {
+        RelationConsumer relation = ComputationalServer.openRelation(false);
+        try {
+            BinaryCodec.decodeJoinQueryMessage(message, relation);
+        } catch (RejectedExecutionException e) {
+            return this.reject(e);
+        } catch (IOException | CancellationException e) {
+            return this.abort(relation, e);
+        }
+        return this.process(relation);
     }
 
     @Path("distributed-join")
     @POST
     @Consumes({MediaType.APPLICATION_JSON})
-    public Response distributedJoin(String message) {
-        DistributedJoinQueryMessage distributedJoinMessage;
+    public Response distributedJoin(InputStream message) {
+        RelationConsumer relation = ComputationalServer.openRelation(true);
+        List<String> workers;
         try {
-            distributedJoinMessage = CustomJsonParser.deserializeObject(message, DistributedJoinQueryMessage.class);
-            JoinQueryMessage joinMessage = distributedJoinMessage.getJoinQueryMessage();
-            int numOfRelations = ComputationalServer.addDistributedMessage(joinMessage.getSender(), distributedJoinMessage);
-            Logger.info(this, distributedJoinMessage.toString(), LogLevel.REQUIRED);
-            if (numOfRelations == 2) {
-                ComputationalServer.distributedJoin();
-            }
-        } catch (JsonProcessingException e) {
-            Logger.err(this, e);
-            return Response.serverError().build();
+            workers = CustomJsonParser.readDistributedJoinQueryMessage(message, relation);
+        } catch (RejectedExecutionException e) {
+            return this.reject(e);
+        } catch (IOException | CancellationException e) {
+            return this.abort(relation, e);
+        }
+        return this.distributedJoin(relation, workers);
+    }
+
+    @Path("distributed-join")
+    @POST
+    @Consumes({BinaryCodec.MEDIA_TYPE})
+    public Response distributedJoinBinary(InputStream message) {
+        RelationConsumer relation = ComputationalServer.openRelation(true);
+        List<String> workers;
+        try {
+            workers = BinaryCodec.decodeDistributedJoinQueryMessage(message, relation);
+        } catch (RejectedExecutionException e) {
+            return this.reject(e);
+        } catch (IOException | CancellationException e) {
+            return this.abort(relation, e);
+        }
+        return this.distributedJoin(relation, workers);
+    }
+
+    @Path("cancel")
+    @POST
+    @Consumes({MediaType.APPLICATION_JSON})
+    public Response cancel(CancelQueryMessage message) {
+        if (!ComputationalServer.cancelQuery(message.getQueryId())) {
+            Logger.warn(this, "Cannot cancel query " + message.getQueryId() + ": the query is not running");
+            return Response.status(Response.Status.NOT_FOUND).build();
         }
+        return Response.ok().build();
+    }
+
+    private Response process(RelationConsumer relation) {
+        Logger.info(this, relation.toString(), LogLevel.REQUIRED);
+        ComputationalServer.closeRelation(relation, null);
+        return Response.ok().build();
+    }
 
+    private Response distributedJoin(RelationConsumer relation, List<String> workers) {
+        if (workers == null) {
+            return this.abort(relation, new IOException("Missing workers in the distributed join request"));
+        }
+        Logger.info(this, relation + " | workers=" + workers, LogLevel.REQUIRED);
+        ComputationalServer.closeRelation(relation, workers);
         return Response.ok().build();
     }
+
+    // The CSP is running too many queries: the storage server may retry later
+    private Response reject(RejectedExecutionException e) {
+        Logger.err(this, e.getMessage());
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
+    }
+
+    private Response abort(RelationConsumer relation, Exception e) {
+        ComputationalServer.abortRelation(relation);
+        Logger.err(this, e);
+        return Response.serverError().build();
+    }
 }
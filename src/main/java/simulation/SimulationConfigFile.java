@@ -1,5 +1,7 @@
 package simulation;
 
+import utility.WireFormat;
+
 import java.util.Map;
 
 /**
@@ -22,6 +24,7 @@ public class SimulationConfigFile {
     private boolean overwriteStatisticsFile;
     private String statisticsTwinsFilePath;
     private String statisticsOccurrencesFilePath;
+    private WireFormat wireFormat;
 
     public Map<String, String> getStorageServer1() {
         return storageServer1;
@@ -119,6 +122,14 @@ public class SimulationConfigFile {
         this.trustedWorkers = trustedWorkers;
     }
 
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    public void setWireFormat(WireFormat wireFormat) {
+        this.wireFormat = wireFormat;
+    }
+
     public SimulationConfigFile() {
     }
 
@@ -0,0 +1,259 @@
+package utility;
+
+import communication.DistributedJoinQueryMessage;
+import communication.JoinQueryMessage;
+import communication.RelationConsumer;
+import communication.ResultMessage;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * The BinaryCodec class.
+ * Compact binary encoding of the join messages, alternative to the JSON one.
+ * Counts and integers are varints, strings are length-prefixed: ciphertexts in canonical Base64
+ * are sent as raw bytes and Base64 encoded again on arrival, any other string is sent as UTF-8.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public final class BinaryCodec {
+    public static final String MEDIA_TYPE = "application/x-join-binary";
+    private static final int UTF8_STRING = 0;
+    private static final int BASE64_STRING = 1;
+    private static final int NULL_STRING = 2;
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private BinaryCodec() {}
+
+    public static byte[] encode(JoinQueryMessage message) {
+        Writer writer = new Writer(BinaryCodec.estimateSize(message.getRelation().size()));
+        BinaryCodec.write(writer, message);
+        return writer.toByteArray();
+    }
+
+    public static byte[] encode(DistributedJoinQueryMessage message) {
+        Writer writer = new Writer(BinaryCodec.estimateSize(message.getJoinQueryMessage().getRelation().size()));
+        writer.writeVarint(message.getWorkers().size());
+        for (String worker : message.getWorkers()) {
+            writer.writeString(worker);
+        }
+        BinaryCodec.write(writer, message.getJoinQueryMessage());
+        return writer.toByteArray();
+    }
+
+    public static byte[] encode(ResultMessage message) {
+        List<Triple<String, String, String>> partialResult = message.getPartialResult();
+        Writer writer = new Writer(BinaryCodec.estimateSize(partialResult.size()));
+        writer.writeString(message.getQueryId());
+        writer.writeSignedVarint(message.getId());
+        writer.writeSignedVarint(message.getNumberOfFragments());
+        writer.writeVarint(partialResult.size());
+        for (Triple<String, String, String> t : partialResult) {
+            writer.writeString(t.getLeft());
+            writer.writeString(t.getMiddle());
+            writer.writeString(t.getRight());
+        }
+        return writer.toByteArray();
+    }
+
+    // The tuples are handed to the consumer while they are read, without materializing the message
+    public static void decodeJoinQueryMessage(InputStream in, RelationConsumer consumer) throws IOException {
+        BinaryCodec.readJoinQueryMessage(new Reader(in), consumer);
+    }
+
+    // Returns the workers, the tuples are handed to the consumer while they are read
+    public static List<String> decodeDistributedJoinQueryMessage(InputStream in, RelationConsumer consumer)
+            throws IOException {
+        Reader reader = new Reader(in);
+        int numberOfWorkers = reader.readVarint();
+        List<String> workers = new ArrayList<>(numberOfWorkers);
+        for (int i = 0; i < numberOfWorkers; i++) {
+            workers.add(reader.readString());
+        }
+        BinaryCodec.readJoinQueryMessage(reader, consumer);
+        return workers;
+    }
+
+    public static ResultMessage decodeResultMessage(InputStream in) throws IOException {
+        Reader reader = new Reader(in);
+        String queryId = reader.readString();
+        int id = reader.readSignedVarint();
+        int numberOfFragments = reader.readSignedVarint();
+        int size = reader.readVarint();
+        List<Triple<String, String, String>> partialResult = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            partialResult.add(Triple.of(reader.readString(), reader.readString(), reader.readString()));
+        }
+        return new ResultMessage(queryId, partialResult, id, numberOfFragments);
+    }
+
+    private static void write(Writer writer, JoinQueryMessage message) {
+        writer.writeString(message.getQueryId());
+        writer.writeString(message.getSender());
+        writer.writeSignedVarint(message.getJoinAttribute());
+        writer.writeVarint(message.getRelation().size());
+        for (Pair<String, String> p : message.getRelation()) {
+            writer.writeString(p.getLeft());
+            writer.writeString(p.getRight());
+        }
+    }
+
+    private static void readJoinQueryMessage(Reader reader, RelationConsumer consumer) throws IOException {
+        String queryId = reader.readString();
+        String sender = reader.readString();
+        int joinAttribute = reader.readSignedVarint();
+        consumer.begin(queryId, sender, joinAttribute);
+        int size = reader.readVarint();
+        for (int i = 0; i < size; i++) {
+            consumer.tuple(reader.readString(), reader.readString());
+        }
+    }
+
+    private static int estimateSize(int numberOfTuples) {
+        // AES ciphertexts of short values are 16 or 32 bytes long
+        return Math.max(64, Math.min(numberOfTuples, 1 << 20) * 64);
+    }
+
+    // True if 's' is exactly the Base64 encoding of some bytes, i.e. decoding and encoding it gives 's' back
+    static boolean isCanonicalBase64(String s) {
+        int length = s.length();
+        if (length == 0 || length % 4 != 0) {
+            return false;
+        }
+        int padding = s.charAt(length - 1) != '=' ? 0 : (s.charAt(length - 2) != '=' ? 1 : 2);
+        int last = 0;
+        for (int i = 0; i < length - padding; i++) {
+            char c = s.charAt(i);
+            if (c >= 128 || BASE64_VALUES[c] < 0) {
+                return false;
+            }
+            last = BASE64_VALUES[c];
+        }
+        // The bits of the last character not covered by the decoded bytes must be zero
+        return padding == 0 || (last & (padding == 1 ? 0x3 : 0xF)) == 0;
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        private Writer(int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+            this.position = 0;
+        }
+
+        private void writeVarint(int value) {
+            this.ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                this.buffer[this.position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.buffer[this.position++] = (byte) value;
+        }
+
+        private void writeSignedVarint(int value) {
+            this.writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        private void writeString(String s) {
+            if (s == null) {
+                this.writeVarint(NULL_STRING);
+                return;
+            }
+            byte[] bytes;
+            int kind;
+            if (BinaryCodec.isCanonicalBase64(s)) {
+                bytes = Base64.getDecoder().decode(s);
+                kind = BASE64_STRING;
+            } else {
+                bytes = s.getBytes(StandardCharsets.UTF_8);
+                kind = UTF8_STRING;
+            }
+            this.writeVarint((bytes.length << 2) | kind);
+            this.ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, this.buffer, this.position, bytes.length);
+            this.position += bytes.length;
+        }
+
+        private void ensureCapacity(int n) {
+            if (this.position + n > this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.position + n));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(this.buffer, this.position);
+        }
+    }
+
+    private static final class Reader {
+        private final InputStream in;
+        private byte[] scratch = new byte[64];
+
+        private Reader(InputStream in) {
+            this.in = in instanceof BufferedInputStream ? in : new BufferedInputStream(in);
+        }
+
+        private int readByte() throws IOException {
+            int b = this.in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated binary message");
+            }
+            return b;
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = this.readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        private int readSignedVarint() throws IOException {
+            int value = this.readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private String readString() throws IOException {
+            int header = this.readVarint();
+            int kind = header & 0x3;
+            if (kind == NULL_STRING) {
+                return null;
+            }
+            int length = header >>> 2;
+            if (this.scratch.length < length) {
+                this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+            }
+            if (this.in.readNBytes(this.scratch, 0, length) != length) {
+                throw new EOFException("Truncated binary message");
+            }
+            if (kind == BASE64_STRING) {
+                return Base64.getEncoder().encodeToString(Arrays.copyOf(this.scratch, length));
+            }
+            return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
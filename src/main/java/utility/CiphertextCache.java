@@ -0,0 +1,97 @@
+package utility;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The CiphertextCache class.
+ * Bounded cache of the ciphertexts of the values encrypted with an EncryptionContext.
+ * Since the key and the initialization vector are fixed for a query the encryption is deterministic,
+ * so every distinct value needs to be encrypted only once: the least recently used entries are evicted.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public final class CiphertextCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 16;
+    private final EncryptionContext encryption;
+    private final Map<String, String> cipherTexts;
+
+    public CiphertextCache(EncryptionContext encryption) {
+        this(encryption, CiphertextCache.DEFAULT_MAX_ENTRIES);
+    }
+
+    public CiphertextCache(EncryptionContext encryption, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The cache size must be > 0!");
+        }
+        this.encryption = encryption;
+        this.cipherTexts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return this.size() > maxEntries;
+            }
+        };
+    }
+
+    public String encrypt(String plainText) {
+        synchronized (this.cipherTexts) {
+            String cipherText = this.cipherTexts.get(plainText);
+            if (cipherText != null) {
+                return cipherText;
+            }
+        }
+        // Encrypt outside the lock: a value encrypted twice concurrently yields the same ciphertext
+        String cipherText = this.encryption.encrypt(plainText);
+        if (cipherText != null) {
+            synchronized (this.cipherTexts) {
+                this.cipherTexts.put(plainText, cipherText);
+            }
+        }
+        return cipherText;
+    }
+
+    public String[] encryptAll(String[] plainTexts) {
+        String[] cipherTexts = new String[plainTexts.length];
+        // Distinct values not in the cache, with their position in the batch to be encrypted
+        Map<String, Integer> misses = new LinkedHashMap<>();
+        synchronized (this.cipherTexts) {
+            for (int i = 0; i < plainTexts.length; i++) {
+                cipherTexts[i] = this.cipherTexts.get(plainTexts[i]);
+                if (cipherTexts[i] == null) {
+                    misses.putIfAbsent(plainTexts[i], misses.size());
+                }
+            }
+        }
+        if (misses.isEmpty()) {
+            return cipherTexts;
+        }
+        String[] missing = misses.keySet().toArray(new String[0]);
+        String[] encrypted = this.encryption.encryptAll(missing);
+        synchronized (this.cipherTexts) {
+            for (int i = 0; i < missing.length; i++) {
+                if (encrypted[i] != null) {
+                    this.cipherTexts.put(missing[i], encrypted[i]);
+                }
+            }
+        }
+        for (int i = 0; i < plainTexts.length; i++) {
+            if (cipherTexts[i] == null) {
+                cipherTexts[i] = encrypted[misses.get(plainTexts[i])];
+            }
+        }
+        return cipherTexts;
+    }
+
+    public int size() {
+        synchronized (this.cipherTexts) {
+            return this.cipherTexts.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (this.cipherTexts) {
+            this.cipherTexts.clear();
+        }
+    }
+}
@@ -1,15 +1,22 @@
 package utility;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
+import communication.RelationConsumer;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.commons.lang3.tuple.Triple;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -52,6 +59,131 @@ public final class CustomJsonParser<T> {
         return CustomJsonParser.mapper.readValue(jsonString, new TypeReference<>() {});
     }
 
+    // Streaming read of a JoinQueryMessage: the tuples are handed to the consumer while they are parsed
+    public static void readJoinQueryMessage(InputStream in, RelationConsumer consumer) throws IOException {
+        try (JsonParser parser = CustomJsonParser.mapper.getFactory().createParser(in)) {
+            CustomJsonParser.expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            CustomJsonParser.readJoinQueryMessage(parser, consumer);
+        }
+    }
+
+    // Streaming read of a DistributedJoinQueryMessage: returns the workers,
+    // the tuples are handed to the consumer while they are parsed
+    public static List<String> readDistributedJoinQueryMessage(InputStream in, RelationConsumer consumer)
+            throws IOException {
+        List<String> workers = null;
+        boolean hasJoinQueryMessage = false;
+        try (JsonParser parser = CustomJsonParser.mapper.getFactory().createParser(in)) {
+            CustomJsonParser.expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "workers" -> {
+                        CustomJsonParser.expect(parser, token, JsonToken.START_ARRAY);
+                        workers = new ArrayList<>();
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            workers.add(parser.getValueAsString());
+                        }
+                    }
+                    case "joinQueryMessage" -> {
+                        CustomJsonParser.expect(parser, token, JsonToken.START_OBJECT);
+                        CustomJsonParser.readJoinQueryMessage(parser, consumer);
+                        hasJoinQueryMessage = true;
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        if (!hasJoinQueryMessage) {
+            consumer.begin(null, null, 0);
+        }
+        return workers;
+    }
+
+    // The fields may come in any order: tuples preceding 'queryId', 'sender' and 'joinAttribute' are buffered
+    private static void readJoinQueryMessage(JsonParser parser, RelationConsumer consumer) throws IOException {
+        String queryId = null;
+        String sender = null;
+        int joinAttribute = 0;
+        boolean hasQueryId = false;
+        boolean hasSender = false;
+        boolean hasJoinAttribute = false;
+        boolean begun = false;
+        List<String> buffer = new ArrayList<>();
+        String[] tuple = new String[2];
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "queryId" -> {
+                    queryId = parser.getValueAsString();
+                    hasQueryId = true;
+                }
+                case "sender" -> {
+                    sender = parser.getValueAsString();
+                    hasSender = true;
+                }
+                case "joinAttribute" -> {
+                    joinAttribute = parser.getValueAsInt();
+                    hasJoinAttribute = true;
+                }
+                case "relation" -> {
+                    if (token == JsonToken.VALUE_NULL) {
+                        continue;
+                    }
+                    CustomJsonParser.expect(parser, token, JsonToken.START_ARRAY);
+                    if (!begun && hasQueryId && hasSender && hasJoinAttribute) {
+                        consumer.begin(queryId, sender, joinAttribute);
+                        begun = true;
+                    }
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        CustomJsonParser.readTuple(parser, tuple);
+                        if (begun) {
+                            consumer.tuple(tuple[0], tuple[1]);
+                        } else {
+                            buffer.add(tuple[0]);
+                            buffer.add(tuple[1]);
+                        }
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        if (!begun) {
+            consumer.begin(queryId, sender, joinAttribute);
+            for (int i = 0; i < buffer.size(); i += 2) {
+                consumer.tuple(buffer.get(i), buffer.get(i + 1));
+            }
+        }
+    }
+
+    // Reads a serialized Pair into 'tuple': left value first, right value second
+    private static void readTuple(JsonParser parser, String[] tuple) throws IOException {
+        CustomJsonParser.expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+        tuple[0] = null;
+        tuple[1] = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "left" -> tuple[0] = parser.getValueAsString();
+                case "right" -> tuple[1] = parser.getValueAsString();
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+        }
+    }
+
     public T readJsonFile() {
         try {
             return CustomJsonParser.mapper.readValue(new File(this.jsonFilePath), this.objectClass);
@@ -0,0 +1,158 @@
+package utility;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+/**
+ * The EncryptionContext class.
+ * AES encryption and decryption with a key and an initialization vector bound once.
+ * Every thread keeps its own initialized Cipher instances and output buffers, so that
+ * the provider lookup and the key expansion are not repeated for every value.
+ * Produces the same ciphertexts as Encryption.encrypt and Encryption.decrypt.
+ * Columns of values can be processed at once: they are split in chunks encrypted or decrypted in parallel.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public final class EncryptionContext {
+    private static final String AES_CIPHER_ALGORITHM = "AES/CBC/PKCS5PADDING";
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    // Values processed by a single task of a batch operation
+    private static final int CHUNK_SIZE = 1024;
+    private final SecretKey key;
+    private final IvParameterSpec initVector;
+    private final ThreadLocal<Cipher> encryptCipher;
+    private final ThreadLocal<Cipher> decryptCipher;
+    private final ThreadLocal<byte[]> buffer;
+
+    public EncryptionContext(SecretKey key, byte[] initVector) {
+        this.key = key;
+        this.initVector = new IvParameterSpec(initVector);
+        this.encryptCipher = ThreadLocal.withInitial(() -> this.createCipher(Cipher.ENCRYPT_MODE));
+        this.decryptCipher = ThreadLocal.withInitial(() -> this.createCipher(Cipher.DECRYPT_MODE));
+        this.buffer = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+    }
+
+    public String encrypt(String plainText) {
+        try {
+            byte[] input = plainText.getBytes(StandardCharsets.UTF_8);
+            int length = this.doFinal(this.encryptCipher, input);
+            byte[] output = this.buffer.get();
+            return new String(Base64.getEncoder().encode(ByteBuffer.wrap(output, 0, length)).array(),
+                    StandardCharsets.ISO_8859_1);
+        } catch (Exception e) {
+            Logger.err(EncryptionContext.class, e);
+        }
+        return null;
+    }
+
+    public String decrypt(String cipherText) throws IllegalBlockSizeException, BadPaddingException, IllegalArgumentException {
+        byte[] input = Base64.getDecoder().decode(cipherText);
+        try {
+            int length = this.doFinal(this.decryptCipher, input);
+            return new String(this.buffer.get(), 0, length, StandardCharsets.UTF_8);
+        } catch (ShortBufferException e) {
+            // The buffer is sized by doFinal: a null plaintext would be taken for a decrypted value
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String[] encryptAll(String[] plainTexts) {
+        String[] cipherTexts = new String[plainTexts.length];
+        EncryptionContext.forEachChunk(plainTexts.length, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                cipherTexts[i] = this.encrypt(plainTexts[i]);
+            }
+            return null;
+        });
+        return cipherTexts;
+    }
+
+    public String[] decryptAll(String[] cipherTexts) throws IllegalBlockSizeException, BadPaddingException, IllegalArgumentException {
+        String[] plainTexts = new String[cipherTexts.length];
+        Exception failure = EncryptionContext.forEachChunk(cipherTexts.length, (from, to) -> {
+            try {
+                for (int i = from; i < to; i++) {
+                    plainTexts[i] = this.decrypt(cipherTexts[i]);
+                }
+            } catch (IllegalBlockSizeException | BadPaddingException | IllegalArgumentException e) {
+                return e;
+            }
+            return null;
+        });
+        if (failure instanceof IllegalBlockSizeException e) {
+            throw e;
+        } else if (failure instanceof BadPaddingException e) {
+            throw e;
+        } else if (failure instanceof IllegalArgumentException e) {
+            throw e;
+        }
+        return plainTexts;
+    }
+
+    public SecretKey getKey() {
+        return this.key;
+    }
+
+    public byte[] getInitVector() {
+        return this.initVector.getIV();
+    }
+
+    // Run the thread's cipher on 'input', leaving the result at the beginning of the thread's buffer
+    private int doFinal(ThreadLocal<Cipher> ciphers, byte[] input)
+            throws IllegalBlockSizeException, BadPaddingException, ShortBufferException {
+        Cipher cipher = ciphers.get();
+        int outputSize = cipher.getOutputSize(input.length);
+        byte[] output = this.buffer.get();
+        if (output.length < outputSize) {
+            output = new byte[Math.max(outputSize, output.length * 2)];
+            this.buffer.set(output);
+        }
+        try {
+            return cipher.doFinal(input, 0, input.length, output, 0);
+        } catch (IllegalBlockSizeException | BadPaddingException | ShortBufferException e) {
+            // Start the next operation from a freshly initialized cipher
+            ciphers.remove();
+            throw e;
+        }
+    }
+
+    // Apply 'operation' to the chunks of [0, size) in parallel, returning the first failure reported (if any)
+    private static Exception forEachChunk(int size, ChunkOperation operation) {
+        if (size <= CHUNK_SIZE) {
+            return operation.apply(0, size);
+        }
+        int numberOfChunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        return IntStream.range(0, numberOfChunks)
+                .parallel()
+                .mapToObj(chunk -> operation.apply(chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE)))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private Cipher createCipher(int mode) {
+        try {
+            Cipher cipher = Cipher.getInstance(AES_CIPHER_ALGORITHM);
+            cipher.init(mode, this.key, this.initVector);
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkOperation {
+        Exception apply(int from, int to);
+    }
+}
@@ -33,6 +33,13 @@ public final class Network {
                 .post(Entity.entity(postObj, MediaType.APPLICATION_JSON));
     }
 
+    public static Response post(Client sender, String targetUrl, byte[] postObj, String mediaType) {
+        Logger.info(Network.class, "POST request to: " + targetUrl + " (" + mediaType + ")", LogLevel.REQUIRED);
+        return sender.target(targetUrl)
+                .request(MediaType.APPLICATION_JSON)
+                .post(Entity.entity(postObj, mediaType));
+    }
+
     public static Response setParams(Client sender, String targetUrl, long seed, String joinAttribute,
                                      String joinAttributeFilePath) {
         Logger.info(Network.class, "GET request with params. to: " + targetUrl, LogLevel.REQUIRED);
@@ -0,0 +1,48 @@
+package utility;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The Sha3TwinHash class.
+ * SHA3-256 twin hash: same digest as Encryption.hash, without copying the key in front of every value:
+ * every thread reuses its own MessageDigest and the digest is reduced with primitive arithmetic,
+ * giving the same remainder as new BigInteger(digest).mod(modulus).
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public final class Sha3TwinHash implements TwinHash {
+    private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(Sha3TwinHash::createDigest);
+    private final byte[] key;
+
+    public Sha3TwinHash(SecretKey key) {
+        this.key = key.getEncoded();
+    }
+
+    @Override
+    public int mod(String value, int modulus) {
+        if (modulus <= 0) {
+            throw new ArithmeticException("Modulus not positive: " + modulus);
+        }
+        MessageDigest digest = Sha3TwinHash.digests.get();
+        digest.update(this.key);
+        byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+        // The digest is a big-endian two's complement number: only its first byte carries the sign
+        long remainder = hash[0];
+        for (int i = 1; i < hash.length; i++) {
+            remainder = Math.floorMod((remainder << 8) | (hash[i] & 0xff), (long) modulus);
+        }
+        return Math.floorMod(remainder, modulus);
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance(Encryption.SHA3_256);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package utility;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The SipTwinHash class.
+ * SipHash-2-4 twin hash: a 64 bit keyed PRF over the UTF-8 bytes of the value,
+ * much cheaper than SHA3-256 on the short join attribute values.
+ * The 128 bit SipHash key is made of the first 16 bytes of the twin condition key.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public final class SipTwinHash implements TwinHash {
+    private static final int KEY_SIZE = 16;
+    private final long k0;
+    private final long k1;
+
+    public SipTwinHash(SecretKey key) {
+        byte[] encoded = key.getEncoded();
+        if (encoded.length < KEY_SIZE) {
+            throw new IllegalArgumentException("SipHash needs a key of at least " + KEY_SIZE + " bytes!");
+        }
+        this.k0 = SipTwinHash.readLong(encoded, 0);
+        this.k1 = SipTwinHash.readLong(encoded, 8);
+    }
+
+    @Override
+    public int mod(String value, int modulus) {
+        if (modulus <= 0) {
+            throw new ArithmeticException("Modulus not positive: " + modulus);
+        }
+        return (int) Long.remainderUnsigned(this.hash(value.getBytes(StandardCharsets.UTF_8)), modulus);
+    }
+
+    public long hash(byte[] data) {
+        long[] v = {
+                this.k0 ^ 0x736f6d6570736575L,
+                this.k1 ^ 0x646f72616e646f6dL,
+                this.k0 ^ 0x6c7967656e657261L,
+                this.k1 ^ 0x7465646279746573L
+        };
+        int end = data.length - (data.length % 8);
+        for (int i = 0; i < end; i += 8) {
+            SipTwinHash.compress(v, SipTwinHash.readLong(data, i));
+        }
+        // Last block: the remaining bytes and the message length in the most significant byte
+        long last = ((long) data.length) << 56;
+        for (int i = end; i < data.length; i++) {
+            last |= (data[i] & 0xffL) << (8 * (i - end));
+        }
+        SipTwinHash.compress(v, last);
+        v[2] ^= 0xff;
+        for (int round = 0; round < 4; round++) {
+            SipTwinHash.sipRound(v);
+        }
+        return v[0] ^ v[1] ^ v[2] ^ v[3];
+    }
+
+    private static void compress(long[] v, long m) {
+        v[3] ^= m;
+        SipTwinHash.sipRound(v);
+        SipTwinHash.sipRound(v);
+        v[0] ^= m;
+    }
+
+    private static void sipRound(long[] v) {
+        v[0] += v[1];
+        v[1] = Long.rotateLeft(v[1], 13) ^ v[0];
+        v[0] = Long.rotateLeft(v[0], 32);
+        v[2] += v[3];
+        v[3] = Long.rotateLeft(v[3], 16) ^ v[2];
+        v[0] += v[3];
+        v[3] = Long.rotateLeft(v[3], 21) ^ v[0];
+        v[2] += v[1];
+        v[1] = Long.rotateLeft(v[1], 17) ^ v[2];
+        v[2] = Long.rotateLeft(v[2], 32);
+    }
+
+    // Little-endian 64 bit word at 'offset'
+    private static long readLong(byte[] data, int offset) {
+        long word = 0;
+        for (int i = 7; i >= 0; i--) {
+            word = (word << 8) | (data[offset + i] & 0xffL);
+        }
+        return word;
+    }
+}
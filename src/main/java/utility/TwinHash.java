@@ -0,0 +1,33 @@
+package utility;
+
+import javax.crypto.SecretKey;
+
+/**
+ * The TwinHash interface.
+ * Keyed hash deciding which tuples are twinned: a value is a twin when h(value) % invPTwin == 0.
+ * Storage servers and client must use the same function, so it travels in the twin condition.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public interface TwinHash {
+    // Function of the twin conditions that do not name one, i.e. created before the function became configurable
+    TwinHashFunction DEFAULT_FUNCTION = TwinHashFunction.SHA3_256;
+
+    // Non-negative remainder of the hash of 'value' divided by 'modulus'
+    int mod(String value, int modulus);
+
+    default boolean isTwin(String value, int invPTwin) {
+        return this.mod(value, invPTwin) == 0;
+    }
+
+    static TwinHash create(TwinHashFunction function, SecretKey key) {
+        if (function == null) {
+            function = TwinHash.DEFAULT_FUNCTION;
+        }
+        return switch (function) {
+            case SHA3_256 -> new Sha3TwinHash(key);
+            case SIPHASH_2_4 -> new SipTwinHash(key);
+        };
+    }
+}
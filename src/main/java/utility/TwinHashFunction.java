@@ -0,0 +1,15 @@
+package utility;
+
+/**
+ * The TwinHashFunction enumeration.
+ * Keyed hash functions available for the twin condition:
+ *  SHA3_256    - Sha3TwinHash, SHA3-256 over the key followed by the value
+ *  SIPHASH_2_4 - SipTwinHash, SipHash-2-4 keyed with the first 128 bits of the key
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public enum TwinHashFunction {
+    SHA3_256,
+    SIPHASH_2_4
+}
@@ -0,0 +1,17 @@
+package utility;
+
+/**
+ * The WireFormat enumeration.
+ * Encoding of the join messages exchanged by storage servers, CSP and client:
+ *  JSON   - CustomJsonParser
+ *  BINARY - BinaryCodec
+ * It is not negotiated: 'wireFormat' in simulation.config.json selects it for the storage servers
+ * and the CSP alike, and the receiving services pick the decoder from the Content-Type of each request.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+public enum WireFormat {
+    JSON,
+    BINARY
+}
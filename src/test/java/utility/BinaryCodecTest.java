@@ -0,0 +1,137 @@
+package utility;
+
+import communication.DistributedJoinQueryMessage;
+import communication.JoinQueryMessage;
+import communication.RelationConsumer;
+import communication.ResultMessage;
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.commons.lang3.tuple.Triple;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The BinaryCodecTest class.
+ * Round trips of the join messages through BinaryCodec: every string must be decoded exactly as it was,
+ * whether it is sent as raw Base64 bytes or as UTF-8.
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+class BinaryCodecTest {
+    // Canonical Base64, sent as raw bytes
+    private static final String CIPHERTEXT = "q83vASNFZ4mrze8BI0VniQ==";
+    // Valid Base64 alphabet and length, but the padding bits of the last character are not zero:
+    // decoding and encoding it again would give "q83vASNFZ4mrze8BI0VniQ=="
+    private static final String NON_CANONICAL = "q83vASNFZ4mrze8BI0VniR==";
+    private static final List<String> VALUES = Arrays.asList(
+            CIPHERTEXT,
+            NON_CANONICAL,
+            "AAEC",
+            "Jerrie%%1",
+            "1-L|Jerrie|32|1",
+            "marker_7,-8_m",
+            "abc",
+            "",
+            "caf\u00e9 \u2713",
+            null
+    );
+
+    @Test
+    void canonicalBase64IsDetected() {
+        assertTrue(BinaryCodec.isCanonicalBase64(CIPHERTEXT));
+        assertTrue(BinaryCodec.isCanonicalBase64("AAEC"));
+        assertFalse(BinaryCodec.isCanonicalBase64(NON_CANONICAL));
+        assertFalse(BinaryCodec.isCanonicalBase64("q83vASNFZ4mrze8BI0VniQ"));
+        assertFalse(BinaryCodec.isCanonicalBase64("Jerrie%%1"));
+        assertFalse(BinaryCodec.isCanonicalBase64(""));
+    }
+
+    @Test
+    void resultMessageRoundTrip() throws IOException {
+        List<Triple<String, String, String>> partialResult = new ArrayList<>();
+        for (int i = 0; i < VALUES.size(); i++) {
+            partialResult.add(Triple.of(VALUES.get(i), VALUES.get((i + 1) % VALUES.size()),
+                    VALUES.get((i + 2) % VALUES.size())));
+        }
+        ResultMessage message = new ResultMessage("3f0c2a9e-query", partialResult, 5,
+                ResultMessage.UNKNOWN_NUMBER_OF_FRAGMENTS);
+
+        ResultMessage decoded = BinaryCodec.decodeResultMessage(new ByteArrayInputStream(BinaryCodec.encode(message)));
+
+        assertEquals(message.getQueryId(), decoded.getQueryId());
+        assertEquals(message.getId(), decoded.getId());
+        assertEquals(message.getNumberOfFragments(), decoded.getNumberOfFragments());
+        assertEquals(partialResult, decoded.getPartialResult());
+    }
+
+    @Test
+    void joinQueryMessageRoundTrip() throws IOException {
+        JoinQueryMessage message = new JoinQueryMessage("query", BinaryCodecTest.relation(), 2, "L");
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        BinaryCodec.decodeJoinQueryMessage(new ByteArrayInputStream(BinaryCodec.encode(message)), consumer);
+
+        assertEquals(List.of("query", "L", "2"), consumer.header);
+        assertEquals(message.getRelation(), consumer.tuples);
+    }
+
+    @Test
+    void distributedJoinQueryMessageRoundTrip() throws IOException {
+        JoinQueryMessage joinQueryMessage = new JoinQueryMessage(null, BinaryCodecTest.relation(), 0, "R");
+        List<String> workers = List.of("worker_0", "worker_1", "worker_2");
+        DistributedJoinQueryMessage message = new DistributedJoinQueryMessage(joinQueryMessage, workers);
+
+        RecordingConsumer consumer = new RecordingConsumer();
+        List<String> decodedWorkers = BinaryCodec.decodeDistributedJoinQueryMessage(
+                new ByteArrayInputStream(BinaryCodec.encode(message)), consumer);
+
+        assertEquals(workers, decodedWorkers);
+        assertEquals(Arrays.asList(null, "R", "0"), consumer.header);
+        assertEquals(joinQueryMessage.getRelation(), consumer.tuples);
+    }
+
+    @Test
+    void truncatedMessageIsRejected() {
+        ResultMessage message = new ResultMessage("query", List.of(Triple.of(CIPHERTEXT, NON_CANONICAL, "abc")), 0, 1);
+        byte[] encoded = BinaryCodec.encode(message);
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+
+        assertThrows(EOFException.class, () -> BinaryCodec.decodeResultMessage(new ByteArrayInputStream(truncated)));
+    }
+
+    private static List<Pair<String, String>> relation() {
+        List<Pair<String, String>> relation = new ArrayList<>();
+        for (int i = 0; i < VALUES.size(); i++) {
+            relation.add(Pair.of(VALUES.get(i), VALUES.get(VALUES.size() - 1 - i)));
+        }
+        return relation;
+    }
+
+    private static final class RecordingConsumer implements RelationConsumer {
+        private final List<String> header = new ArrayList<>();
+        private final List<Pair<String, String>> tuples = new ArrayList<>();
+
+        @Override
+        public void begin(String queryId, String sender, int joinAttribute) {
+            this.header.add(queryId);
+            this.header.add(sender);
+            this.header.add(String.valueOf(joinAttribute));
+        }
+
+        @Override
+        public void tuple(String left, String right) {
+            this.tuples.add(Pair.of(left, right));
+        }
+    }
+}
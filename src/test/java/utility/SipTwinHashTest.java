@@ -0,0 +1,76 @@
+package utility;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The SipTwinHashTest class.
+ * SipTwinHash against the reference vectors of SipHash-2-4: key 00 01 .. 0f, message 00 01 .. (n - 1).
+ *
+ * @author  Federica Vicini
+ * @author  Michele Zenoni
+ */
+class SipTwinHashTest {
+    private static final long[] REFERENCE_VECTORS = {
+            0x726fdb47dd0e0e31L, // n = 0
+            0x74f839c593dc67fdL,
+            0x0d6c8009d9a94f5aL,
+            0x85676696d7fb7e2dL,
+            0xcf2794e0277187b7L,
+            0x18765564cd99a68dL,
+            0xcbc9466e58fee3ceL,
+            0xab0200f58b01d137L,
+            0x93f5f5799a932462L, // n = 8: a full block and the length block
+            0x9e0082df0ba9e4b0L,
+            0x7a5dbbc594ddb9f3L,
+            0xf4b32f46226bada7L,
+            0x751e8fbc860ee5fbL,
+            0x14ea5627c0843d90L,
+            0xf723ca908e7af2eeL,
+            0xa129ca6149be45e5L, // n = 15: the example of the SipHash paper
+            0x3f2acc7f57c29bdbL
+    };
+
+    private static SipTwinHash referenceHash() {
+        byte[] key = new byte[16];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) i;
+        }
+        return new SipTwinHash(new SecretKeySpec(key, Encryption.AES));
+    }
+
+    @Test
+    void hashMatchesReferenceVectors() {
+        SipTwinHash twinHash = SipTwinHashTest.referenceHash();
+        for (int n = 0; n < REFERENCE_VECTORS.length; n++) {
+            byte[] message = new byte[n];
+            for (int i = 0; i < n; i++) {
+                message[i] = (byte) i;
+            }
+            assertEquals(REFERENCE_VECTORS[n], twinHash.hash(message), "message of " + n + " bytes");
+        }
+    }
+
+    @Test
+    void modIsUnsignedRemainder() {
+        SipTwinHash twinHash = SipTwinHashTest.referenceHash();
+        // The empty string hashes like the empty message, whose hash is below 2^63
+        assertEquals(Long.remainderUnsigned(0x726fdb47dd0e0e31L, 7), twinHash.mod("", 7));
+        // 0xa129ca6149be45e5 is negative as a signed long
+        String value = "\u0000\u0001\u0002\u0003\u0004\u0005\u0006\u0007\u0008\u0009\n\u000b\u000c\r\u000e";
+        int remainder = twinHash.mod(value, 1000);
+        assertEquals(Long.remainderUnsigned(0xa129ca6149be45e5L, 1000), remainder);
+        assertTrue(remainder >= 0);
+    }
+
+    @Test
+    void shortKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new SipTwinHash(new SecretKeySpec(new byte[8], Encryption.AES)));
+    }
+}